@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins;
+
+import com.google.inject.Inject;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Pipeline step publishing the build like the post-build action does:
+ * <pre>codebeamerTrend wikiUri: 'https://codebeamer.example.com/cb/wiki/1001', credentialsId: 'codebeamer'</pre>
+ * Only the build is read, so the step needs no node block. It runs on a thread of its own instead of the CPS
+ * thread, parallel branches publish at the same time without holding an executor.
+ */
+public class CodebeamerTrendStep extends AbstractStepImpl {
+    private final String wikiUri;
+    private final String credentialsId;
+    private Integer keepBuildNumber;
+    private Integer keepTrendRows;
+    private String trendAggregation;
+    private String markupTemplate;
+    private boolean asyncPublishing;
+    private Integer maxRenderedChanges;
+    private Integer trendSegmentRows;
+    private boolean localTrendStore;
+
+    @DataBoundConstructor
+    public CodebeamerTrendStep(String wikiUri, String credentialsId) {
+        this.wikiUri = wikiUri;
+        this.credentialsId = credentialsId;
+    }
+
+    PostBuildScript getPublisher() {
+        PostBuildScript publisher = new PostBuildScript(wikiUri, credentialsId, keepBuildNumber);
+        publisher.setKeepTrendRows(keepTrendRows);
+        publisher.setTrendAggregation(trendAggregation);
+        publisher.setMarkupTemplate(markupTemplate);
+        publisher.setAsyncPublishing(asyncPublishing);
+        publisher.setMaxRenderedChanges(maxRenderedChanges);
+        publisher.setTrendSegmentRows(trendSegmentRows);
+        publisher.setLocalTrendStore(localTrendStore);
+        return publisher;
+    }
+
+    public String getWikiUri() {
+        return wikiUri;
+    }
+
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    public Integer getKeepBuildNumber() {
+        return keepBuildNumber;
+    }
+
+    @DataBoundSetter
+    public void setKeepBuildNumber(Integer keepBuildNumber) {
+        this.keepBuildNumber = keepBuildNumber;
+    }
+
+    public Integer getKeepTrendRows() {
+        return keepTrendRows;
+    }
+
+    @DataBoundSetter
+    public void setKeepTrendRows(Integer keepTrendRows) {
+        this.keepTrendRows = keepTrendRows;
+    }
+
+    public String getTrendAggregation() {
+        return trendAggregation;
+    }
+
+    @DataBoundSetter
+    public void setTrendAggregation(String trendAggregation) {
+        this.trendAggregation = trendAggregation;
+    }
+
+    public String getMarkupTemplate() {
+        return markupTemplate;
+    }
+
+    @DataBoundSetter
+    public void setMarkupTemplate(String markupTemplate) {
+        this.markupTemplate = markupTemplate;
+    }
+
+    public boolean isAsyncPublishing() {
+        return asyncPublishing;
+    }
+
+    @DataBoundSetter
+    public void setAsyncPublishing(boolean asyncPublishing) {
+        this.asyncPublishing = asyncPublishing;
+    }
+
+    public Integer getMaxRenderedChanges() {
+        return maxRenderedChanges;
+    }
+
+    @DataBoundSetter
+    public void setMaxRenderedChanges(Integer maxRenderedChanges) {
+        this.maxRenderedChanges = maxRenderedChanges;
+    }
+
+    public Integer getTrendSegmentRows() {
+        return trendSegmentRows;
+    }
+
+    @DataBoundSetter
+    public void setTrendSegmentRows(Integer trendSegmentRows) {
+        this.trendSegmentRows = trendSegmentRows;
+    }
+
+    public boolean isLocalTrendStore() {
+        return localTrendStore;
+    }
+
+    @DataBoundSetter
+    public void setLocalTrendStore(boolean localTrendStore) {
+        this.localTrendStore = localTrendStore;
+    }
+
+    public static class Execution extends AbstractSynchronousNonBlockingStepExecution<Void> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient CodebeamerTrendStep step;
+        @StepContextParameter
+        private transient Run<?, ?> run;
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @Override
+        protected Void run() throws Exception {
+            step.getPublisher().publish(run, listener);
+            return null;
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends AbstractStepDescriptorImpl {
+        public DescriptorImpl() {
+            super(Execution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "codebeamerTrend";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Publish the build to a codeBeamer wiki page";
+        }
+
+        public ListBoxModel doFillTrendAggregationItems() {
+            return getPublisherDescriptor().doFillTrendAggregationItems();
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project, @QueryParameter String credentialsId) {
+            return getPublisherDescriptor().doFillCredentialsIdItems(project, credentialsId);
+        }
+
+        private static PostBuildScript.DescriptorImpl getPublisherDescriptor() {
+            return Jenkins.getActiveInstance().getDescriptorByType(PostBuildScript.DescriptorImpl.class);
+        }
+    }
+}
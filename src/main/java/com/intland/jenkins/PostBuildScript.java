@@ -9,17 +9,30 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.intland.jenkins.api.CircuitBreaker;
+import com.intland.jenkins.api.CircuitOpenException;
 import com.intland.jenkins.api.CodebeamerApiClient;
+import com.intland.jenkins.api.UserIdCache;
+import com.intland.jenkins.action.PublishStatusAction;
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.action.PublishTimingProjectAction;
 import com.intland.jenkins.collector.CodebeamerCollector;
-import com.intland.jenkins.collector.dto.CodebeamerDto;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import com.intland.jenkins.publish.CodebeamerPublisher;
+import com.intland.jenkins.publish.PublishJob;
 import com.intland.jenkins.util.PluginUtil;
+import com.intland.jenkins.util.TrendCsvCompactor;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
+import hudson.model.Action;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Item;
 import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.model.queue.Tasks;
 import hudson.security.ACL;
 import hudson.tasks.BuildStepDescriptor;
@@ -28,20 +41,34 @@ import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class PostBuildScript extends Notifier {
+public class PostBuildScript extends Notifier implements SimpleBuildStep {
     public static final String PLUGIN_SHORTNAME = "codebeamer-result-trend-updater";
+    private static final Logger LOGGER = Logger.getLogger(PostBuildScript.class.getName());
+    private static final String TREND_STORE_DIRECTORY = "trends";
     private String wikiUri;
     private String credentialsId;
     private Integer keepBuildNumber;
+    private Integer keepTrendRows;
+    private String trendAggregation;
+    private String markupTemplate;
+    private boolean asyncPublishing;
+    private Integer maxRenderedChanges;
+    private Integer trendSegmentRows;
+    private boolean localTrendStore;
 
     @Override
     public BuildStepMonitor getRequiredMonitorService() {
@@ -57,30 +84,96 @@ public class PostBuildScript extends Notifier {
 
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws IOException {
+        publish(build, listener);
+        return true;
+    }
+
+    @Override
+    public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException {
+        publish(run, listener);
+    }
+
+    /**
+     * Collects the data of the build and publishes it, shared by the publisher and the Pipeline step. Only the build
+     * itself is read, neither a workspace nor an agent is needed.
+     */
+    void publish(Run<?, ?> build, TaskListener listener) throws IOException {
         Pattern wikiUrlPattern = Pattern.compile("(https?://.+)/wiki/(\\d+)");
         Matcher wikiUrlMatcher = wikiUrlPattern.matcher(wikiUri);
         if (!wikiUrlMatcher.find()) {
             listener.getLogger().println("Invalid Codebeamer URI, skipping....");
-            return true;
+            return;
         }
 
         String url = wikiUrlMatcher.group(1);
         String wikiId = wikiUrlMatcher.group(2);
 
+        // codeBeamer has been failing recently, don't make the build wait for every call to time out
+        CircuitBreaker circuitBreaker = CircuitBreaker.forUrl(url);
+        if (circuitBreaker.isOpen()) {
+            listener.getLogger().println(String.format("codeBeamer at %s is unavailable after repeated failures, skipping publishing", circuitBreaker.getHost()));
+            return;
+        }
+
+        PublishTimingAction timingAction = new PublishTimingAction();
+        long start = System.currentTimeMillis();
         StandardUsernamePasswordCredentials standardUsernamePasswordCredentials = PluginUtil.getCredentials(build.getParent(), credentialsId);
+        timingAction.recordSince(PublishTimingAction.Phase.CREDENTIALS, start);
 
         CodebeamerApiClient apiClient = new CodebeamerApiClient(getUsername(standardUsernamePasswordCredentials), getPassword(standardUsernamePasswordCredentials), url, wikiId);
 
         long currentTime = System.currentTimeMillis();
-        CodebeamerDto codebeamerDto = CodebeamerCollector.collectCodebeamerData(build, listener, apiClient, currentTime, keepBuildNumber);
+        PublishDataDto publishDataDto;
+        try {
+            publishDataDto = CodebeamerCollector.collectPublishData(build, listener, apiClient, currentTime, timingAction, maxRenderedChanges);
+        } catch (CircuitOpenException e) {
+            listener.getLogger().println(e.getMessage() + ", skipping publishing");
+            return;
+        }
+        // the counters are those of the whole controller, they say nothing about this build
+        LOGGER.fine(UserIdCache.get().getSummary());
 
-        listener.getLogger().println("Starting wiki update");
-        apiClient.updateWikiMarkup(url, wikiId, codebeamerDto.getMarkup());
-        listener.getLogger().println("Wiki update finished");
+        PublishStatusAction statusAction = new PublishStatusAction(wikiUri);
+        build.addAction(statusAction);
+        build.addAction(timingAction);
+        PublishJob publishJob = new PublishJob(apiClient, url, wikiId, keepBuildNumber, markupTemplate, getTrendCsvCompactor(),
+                trendSegmentRows, getTrendStoreDirectory(), publishDataDto, statusAction, timingAction);
 
-        apiClient.createOrUpdateAttachment(codebeamerDto.getAttachmentName(), codebeamerDto.getAttachmentContent());
-        listener.getLogger().println("Attachment uploaded");
-        return true;
+        if (asyncPublishing) {
+            if (CodebeamerPublisher.publishAsync(publishJob)) {
+                listener.getLogger().println(timingAction.getSummary() + " before publishing");
+                listener.getLogger().println("Publishing to codeBeamer in the background, see the build page for the result");
+                return;
+            }
+            listener.getLogger().println("codeBeamer publishing queue is full, publishing synchronously");
+        }
+
+        try {
+            CodebeamerPublisher.publish(publishJob, listener.getLogger());
+        } catch (CircuitOpenException e) {
+            // publishing never changes the result of the build
+            listener.getLogger().println(e.getMessage() + ", skipping publishing");
+        }
+    }
+
+    @Override
+    public Collection<? extends Action> getProjectActions(AbstractProject<?, ?> project) {
+        return Collections.singletonList(new PublishTimingProjectAction(project));
+    }
+
+    private TrendCsvCompactor getTrendCsvCompactor() {
+        if (keepTrendRows == null || keepTrendRows.intValue() <= 0) {
+            return null;
+        }
+        return new TrendCsvCompactor(keepTrendRows.intValue(), TrendCsvCompactor.Granularity.fromName(trendAggregation));
+    }
+
+    private File getTrendStoreDirectory() {
+        File dataDir = PluginUtil.getPluginDataDir();
+        if (!localTrendStore || dataDir == null) {
+            return null;
+        }
+        return new File(dataDir, TREND_STORE_DIRECTORY);
     }
 
     private String getUsername(StandardUsernamePasswordCredentials standardUsernamePasswordCredentials) {
@@ -103,6 +196,69 @@ public class PostBuildScript extends Notifier {
         return keepBuildNumber;
     }
 
+    public Integer getKeepTrendRows() {
+        return keepTrendRows;
+    }
+
+    @DataBoundSetter
+    public void setKeepTrendRows(Integer keepTrendRows) {
+        this.keepTrendRows = keepTrendRows;
+    }
+
+    public String getTrendAggregation() {
+        return trendAggregation;
+    }
+
+    @DataBoundSetter
+    public void setTrendAggregation(String trendAggregation) {
+        this.trendAggregation = trendAggregation;
+    }
+
+    public String getMarkupTemplate() {
+        return markupTemplate;
+    }
+
+    @DataBoundSetter
+    public void setMarkupTemplate(String markupTemplate) {
+        this.markupTemplate = markupTemplate;
+    }
+
+    public boolean isAsyncPublishing() {
+        return asyncPublishing;
+    }
+
+    @DataBoundSetter
+    public void setAsyncPublishing(boolean asyncPublishing) {
+        this.asyncPublishing = asyncPublishing;
+    }
+
+    public Integer getMaxRenderedChanges() {
+        return maxRenderedChanges;
+    }
+
+    @DataBoundSetter
+    public void setMaxRenderedChanges(Integer maxRenderedChanges) {
+        this.maxRenderedChanges = maxRenderedChanges;
+    }
+
+    public Integer getTrendSegmentRows() {
+        return trendSegmentRows;
+    }
+
+    @DataBoundSetter
+    public void setTrendSegmentRows(Integer trendSegmentRows) {
+        this.trendSegmentRows = trendSegmentRows;
+    }
+
+    public boolean isLocalTrendStore() {
+        return localTrendStore;
+    }
+
+    @DataBoundSetter
+    public void setLocalTrendStore(boolean localTrendStore) {
+        this.localTrendStore = localTrendStore;
+    }
+
     @Extension
     public static class DescriptorImpl extends BuildStepDescriptor<Publisher> {
 
@@ -121,6 +277,13 @@ public class PostBuildScript extends Notifier {
             return true;
         }
 
+        public ListBoxModel doFillTrendAggregationItems() {
+            ListBoxModel result = new ListBoxModel();
+            result.add("Daily", TrendCsvCompactor.Granularity.DAILY.name());
+            result.add("Hourly", TrendCsvCompactor.Granularity.HOURLY.name());
+            return result;
+        }
+
         public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project, @QueryParameter String credentialsId) {
             StandardListBoxModel result = new StandardListBoxModel();
             if (project == null) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import com.intland.jenkins.api.CodebeamerMetrics;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.Locale;
+
+/**
+ * Manage Jenkins page listing latency percentiles, status codes, timeouts and traffic of the codeBeamer REST calls
+ * made since Jenkins started.
+ */
+@Extension
+public class CodebeamerMetricsLink extends ManagementLink {
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "codeBeamer Metrics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Latency, errors and traffic of the calls made to codeBeamer by the trend updater";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "codebeamer-metrics";
+    }
+
+    public Iterable<CodebeamerMetrics.EndpointStats> getEndpoints() {
+        return CodebeamerMetrics.getAll();
+    }
+
+    public String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    public String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shows on the build page whether the build has been published to codeBeamer. Publishing may finish after the
+ * build itself, the build is saved again once the final status is known.
+ */
+public class PublishStatusAction implements RunAction2 {
+    private static final Logger LOGGER = Logger.getLogger(PublishStatusAction.class.getName());
+
+    public enum Status {
+        QUEUED("queued"),
+        PUBLISHING("in progress"),
+        PUBLISHED("published"),
+        FAILED("failed");
+
+        private final String displayName;
+
+        Status(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private transient Run<?, ?> run;
+
+    private final String wikiUri;
+    private volatile Status status = Status.PUBLISHING;
+    private volatile String message;
+
+    public PublishStatusAction(String wikiUri) {
+        this.wikiUri = wikiUri;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public void queued() {
+        status = Status.QUEUED;
+    }
+
+    public void publishing() {
+        status = Status.PUBLISHING;
+    }
+
+    public void published() {
+        status = Status.PUBLISHED;
+        message = null;
+        save();
+    }
+
+    public void failed(String message) {
+        status = Status.FAILED;
+        this.message = message;
+        save();
+    }
+
+    private void save() {
+        Run<?, ?> run = this.run;
+        if (run != null && !run.isBuilding()) {
+            try {
+                run.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save codeBeamer publishing status of " + run, e);
+            }
+        }
+    }
+
+    public String getWikiUri() {
+        return wikiUri;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isFinished() {
+        return status == Status.PUBLISHED || status == Status.FAILED;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "codeBeamer publishing";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
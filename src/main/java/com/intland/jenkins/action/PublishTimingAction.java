@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import hudson.model.Action;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * How long each phase of collecting and publishing the build's data took. Phases a build didn't go through are
+ * missing, e.g. the performance report of a build with test results. The breakdown is saved with the build once
+ * publishing has finished.
+ */
+public class PublishTimingAction implements Action {
+    public enum Phase {
+        CREDENTIALS("credentials"),
+        BUILD_DATA("build data"),
+        SCM_REPOSITORY("repository lookup"),
+        SCM_USERS("user lookup"),
+        TEST_RESULTS("test results"),
+        PERFORMANCE("performance report"),
+        WIKI_FETCH("wiki fetch"),
+        RENDER("render"),
+        WIKI_UPDATE("wiki update"),
+        ATTACHMENT("attachment");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final EnumMap<Phase, Long> durations = new EnumMap<Phase, Long>(Phase.class);
+
+    public synchronized void record(Phase phase, long durationMillis) {
+        Long previous = durations.get(phase);
+        durations.put(phase, previous == null ? durationMillis : previous + durationMillis);
+    }
+
+    public void recordSince(Phase phase, long startMillis) {
+        record(phase, System.currentTimeMillis() - startMillis);
+    }
+
+    public synchronized boolean hasPhase(Phase phase) {
+        return durations.containsKey(phase);
+    }
+
+    public synchronized long getDuration(Phase phase) {
+        Long duration = durations.get(phase);
+        return duration == null ? 0 : duration;
+    }
+
+    public synchronized long getTotal() {
+        long total = 0;
+        for (Long duration : durations.values()) {
+            total += duration;
+        }
+        return total;
+    }
+
+    /**
+     * @return e.g. <code>codeBeamer publishing took 1630 ms: credentials 2 ms, build data 1 ms, ...</code>
+     */
+    public synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder("codeBeamer publishing took ").append(getTotal()).append(" ms");
+        String separator = ": ";
+        for (Map.Entry<Phase, Long> duration : durations.entrySet()) {
+            summary.append(separator).append(duration.getKey().getDisplayName()).append(' ').append(duration.getValue()).append(" ms");
+            separator = ", ";
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "codeBeamer publishing timing";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Job page listing the publishing phases of the latest builds and the share each phase has in the total time.
+ */
+public class PublishTimingProjectAction implements Action {
+    private static final int MAX_BUILDS = Integer.getInteger(PublishTimingProjectAction.class.getName() + ".maxBuilds", 20);
+
+    private final Job<?, ?> job;
+
+    public PublishTimingProjectAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * @return the latest builds with a timing breakdown, newest first
+     */
+    public List<BuildTiming> getBuilds() {
+        List<BuildTiming> result = new ArrayList<BuildTiming>();
+        for (Run<?, ?> run = job.getLastBuild(); run != null && result.size() < MAX_BUILDS; run = run.getPreviousBuild()) {
+            PublishTimingAction timing = run.getAction(PublishTimingAction.class);
+            if (timing != null) {
+                result.add(new BuildTiming(run, timing));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the phases present in any of the given builds, in execution order
+     */
+    public List<PublishTimingAction.Phase> getPhases(List<BuildTiming> builds) {
+        Set<PublishTimingAction.Phase> phases = EnumSet.noneOf(PublishTimingAction.Phase.class);
+        for (BuildTiming build : builds) {
+            for (PublishTimingAction.Phase phase : PublishTimingAction.Phase.values()) {
+                if (build.timing.hasPhase(phase)) {
+                    phases.add(phase);
+                }
+            }
+        }
+        return new ArrayList<PublishTimingAction.Phase>(phases);
+    }
+
+    public long getAverage(List<BuildTiming> builds, PublishTimingAction.Phase phase) {
+        if (builds.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (BuildTiming build : builds) {
+            total += build.timing.getDuration(phase);
+        }
+        return total / builds.size();
+    }
+
+    public String getShare(List<BuildTiming> builds, PublishTimingAction.Phase phase) {
+        long total = 0;
+        long phaseTotal = 0;
+        for (BuildTiming build : builds) {
+            total += build.timing.getTotal();
+            phaseTotal += build.timing.getDuration(phase);
+        }
+        return total == 0 ? "0%" : String.format(Locale.ROOT, "%.0f%%", 100.0 * phaseTotal / total);
+    }
+
+    /**
+     * @return the phase that took the most time in total over the given builds, null if there are none
+     */
+    public PublishTimingAction.Phase getDominantPhase(List<BuildTiming> builds) {
+        PublishTimingAction.Phase dominant = null;
+        long dominantTotal = -1;
+        for (PublishTimingAction.Phase phase : getPhases(builds)) {
+            long phaseTotal = 0;
+            for (BuildTiming build : builds) {
+                phaseTotal += build.timing.getDuration(phase);
+            }
+            if (phaseTotal > dominantTotal) {
+                dominant = phase;
+                dominantTotal = phaseTotal;
+            }
+        }
+        return dominant;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "codeBeamer Publishing Timing";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "codebeamer-timing";
+    }
+
+    public static class BuildTiming {
+        private final Run<?, ?> run;
+        private final PublishTimingAction timing;
+
+        private BuildTiming(Run<?, ?> run, PublishTimingAction timing) {
+            this.run = run;
+            this.timing = timing;
+        }
+
+        public Run<?, ?> getRun() {
+            return run;
+        }
+
+        public PublishTimingAction getTiming() {
+            return timing;
+        }
+    }
+}
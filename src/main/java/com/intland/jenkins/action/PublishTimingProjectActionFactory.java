@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Adds the timing page to Pipeline jobs, which have no publishers to contribute project actions. A job gets the page
+ * once its last completed build was published, freestyle jobs get it from the post-build action instead.
+ */
+@Extension
+public class PublishTimingProjectActionFactory extends TransientActionFactory<Job> {
+    @Override
+    public Class<Job> type() {
+        return Job.class;
+    }
+
+    @Override
+    public Collection<? extends Action> createFor(Job target) {
+        if (target instanceof AbstractProject) {
+            return Collections.emptyList();
+        }
+        Run<?, ?> lastCompletedBuild = target.getLastCompletedBuild();
+        if (lastCompletedBuild == null || lastCompletedBuild.getAction(PublishTimingAction.class) == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new PublishTimingProjectAction(target));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.action;
+
+import com.intland.jenkins.collector.dto.TestResultDto;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Invisible build action holding the test figures published for a build, so later builds can read the previous
+ * figures without loading and parsing the full test results of older builds.
+ *
+ * The failed tests are kept as hashes in build.xml, about 30 bytes each, up to
+ * {@link #MAX_FAILED_TEST_HASHES}. A build with more failures keeps none, the next build reads its test results then.
+ */
+public class TestSummaryAction implements RunAction2 {
+    public static final int MAX_FAILED_TEST_HASHES = Integer.getInteger(TestSummaryAction.class.getName() + ".maxFailedTestHashes", 1000);
+
+    private transient Run<?, ?> run;
+
+    private final boolean testResultPresent;
+    private final int totalCount;
+    private final int failCount;
+    private final int skipCount;
+    private final long testDuration;
+    private final long buildDuration;
+    // LongHashSet.hash of the names of the failed tests, null for builds published before they were recorded or
+    // with too many failures
+    private final long[] failedTestHashes;
+
+    public TestSummaryAction(boolean testResultPresent, TestResultDto testResultDto, long buildDuration, long[] failedTestHashes) {
+        this.testResultPresent = testResultPresent;
+        this.totalCount = testResultDto.getTotalCount();
+        this.failCount = testResultDto.getFailCount();
+        this.skipCount = testResultDto.getSkipCount();
+        this.testDuration = testResultDto.getTestDuration();
+        this.buildDuration = buildDuration;
+        this.failedTestHashes = failedTestHashes != null && failedTestHashes.length <= MAX_FAILED_TEST_HASHES ? failedTestHashes : null;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public boolean isTestResultPresent() {
+        return testResultPresent;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getFailCount() {
+        return failCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public long getTestDuration() {
+        return testDuration;
+    }
+
+    public long getBuildDuration() {
+        return buildDuration;
+    }
+
+    public long[] getFailedTestHashes() {
+        return failedTestHashes;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
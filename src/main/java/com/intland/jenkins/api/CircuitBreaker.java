@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-host circuit breaker over the outcome of the most recent requests. The circuit opens when too many of them
+ * failed or were slow, requests then fail fast until the open period is over. After that a single trial request
+ * is let through (half-open), its outcome closes the circuit or opens it again.
+ */
+public class CircuitBreaker {
+    private static final String PREFIX = CircuitBreaker.class.getName();
+    private static final int WINDOW_SIZE = Integer.getInteger(PREFIX + ".windowSize", 20);
+    private static final int MINIMUM_CALLS = Integer.getInteger(PREFIX + ".minimumCalls", 5);
+    private static final int FAILURE_RATE_THRESHOLD = Integer.getInteger(PREFIX + ".failureRateThreshold", 50);
+    private static final int SLOW_CALL_RATE_THRESHOLD = Integer.getInteger(PREFIX + ".slowCallRateThreshold", 80);
+    private static final long SLOW_CALL_MILLIS = Long.getLong(PREFIX + ".slowCallMillis", 5000L);
+    private static final long OPEN_MILLIS = Long.getLong(PREFIX + ".openMillis", 30000L);
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new HashMap<String, CircuitBreaker>();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String host;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+
+    // ring buffer of the latest outcomes
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(String host, int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                   long slowCallMillis, long openMillis) {
+        this.host = host;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    public static synchronized CircuitBreaker forUrl(String url) {
+        String host = getHost(url);
+        CircuitBreaker breaker = BREAKERS.get(host);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(host, WINDOW_SIZE, MINIMUM_CALLS, FAILURE_RATE_THRESHOLD, SLOW_CALL_RATE_THRESHOLD,
+                    SLOW_CALL_MILLIS, OPEN_MILLIS);
+            BREAKERS.put(host, breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * @throws CircuitOpenException if the request must not be sent
+     */
+    public void acquirePermission() throws CircuitOpenException {
+        acquirePermission(System.currentTimeMillis());
+    }
+
+    synchronized void acquirePermission(long now) throws CircuitOpenException {
+        if (state == State.OPEN) {
+            long remaining = openedAt + openMillis - now;
+            if (remaining > 0) {
+                throw new CircuitOpenException(host, remaining);
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                throw new CircuitOpenException(host, 0);
+            }
+            trialInFlight = true;
+        }
+    }
+
+    public void onSuccess(long durationMillis) {
+        record(false, durationMillis, System.currentTimeMillis());
+    }
+
+    public void onFailure(long durationMillis) {
+        record(true, durationMillis, System.currentTimeMillis());
+    }
+
+    synchronized void record(boolean failure, long durationMillis, long now) {
+        boolean slowCall = durationMillis >= slowCallMillis;
+
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (failure || slowCall) {
+                open(now);
+            } else {
+                state = State.CLOSED;
+                reset();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // a request let through before the circuit opened
+            return;
+        }
+
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if (recorded >= minimumCalls
+                && (failures * 100 >= failureRateThreshold * recorded || slowCalls * 100 >= slowCallRateThreshold * recorded)) {
+            open(now);
+        }
+    }
+
+    /**
+     * Releases a half-open trial that ended without an outcome, e.g. because it was aborted.
+     */
+    public synchronized void release() {
+        trialInFlight = false;
+    }
+
+    public State getState() {
+        return getState(System.currentTimeMillis());
+    }
+
+    synchronized State getState(long now) {
+        if (state == State.OPEN && now >= openedAt + openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public boolean isOpen() {
+        return getState() == State.OPEN;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private static String getHost(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() != null) {
+                return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through, the url itself identifies the breaker then
+        }
+        return url;
+    }
+}
@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request was not sent because codeBeamer has been failing or responding too slowly recently.
+ */
+public class CircuitOpenException extends IOException {
+    public CircuitOpenException(String host, long retryInMillis) {
+        super(String.format("codeBeamer at %s is unavailable, requests are suspended for another %d seconds",
+                host, Math.max(1, retryInMillis / 1000)));
+    }
+}
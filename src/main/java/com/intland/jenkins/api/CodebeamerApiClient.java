@@ -4,41 +4,59 @@
 
 package com.intland.jenkins.api;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashSet;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 
-import org.apache.commons.io.Charsets;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.impl.client.BasicResponseHandler;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.message.BasicHeader;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intland.jenkins.api.CodebeamerMetrics.Endpoint;
 import com.intland.jenkins.api.dto.AttachmentDto;
 import com.intland.jenkins.api.dto.MarkupDto;
 import com.intland.jenkins.api.dto.RepositoryDto;
 import com.intland.jenkins.api.dto.UserDto;
-
-import jcifs.util.Base64;
+import com.intland.jenkins.util.ExecutorUtil;
+import com.intland.jenkins.util.TrendCsvCompactor;
+import com.intland.jenkins.util.TrendSegmentManifest;
 
 public class CodebeamerApiClient {
+    private static final String NOT_MANAGED_BY_CODEBEAMER = "not managed by codeBeamer";
+    private static final int MAX_RETRIES = Integer.getInteger(CodebeamerApiClient.class.getName() + ".maxRetries", 2);
+    private static final long BASE_BACKOFF_MILLIS = Long.getLong(CodebeamerApiClient.class.getName() + ".backoff", 500L);
+    private static final long MAX_BACKOFF_MILLIS = 8000L;
     private final int HTTP_TIMEOUT = 10000;
-    private HttpClient client;
+    private CloseableHttpClient client;
+    private CircuitBreaker circuitBreaker;
+    private Semaphore attachmentUpdatePermits;
     private RequestConfig requestConfig;
     private String baseUrl;
     private String wikiId;
@@ -49,17 +67,10 @@ public class CodebeamerApiClient {
         wikiId = wikiIdentifier;
         baseUrl = url;
 
-        // initialize rest client
-        // http://stackoverflow.com/questions/9539141/httpclient-sends-out-two-requests-when-using-basic-auth
-        final String authHeader = "Basic " + Base64.encode((username + ":" + password).getBytes(Charsets.UTF_8));
-
-        HashSet<Header> defaultHeaders = new HashSet<Header>();
-        defaultHeaders.add(new BasicHeader(HttpHeaders.AUTHORIZATION, authHeader));
-
-        client = HttpClientBuilder
-                .create()
-                .setDefaultHeaders(defaultHeaders)
-                .build();
+        // rest clients are pooled per host and credentials, see CodebeamerClientRegistry
+        client = CodebeamerClientRegistry.getClient(url, username, password);
+        attachmentUpdatePermits = CodebeamerClientRegistry.getAttachmentUpdatePermits(url, username, password);
+        circuitBreaker = CircuitBreaker.forUrl(url);
         requestConfig = RequestConfig
                 .custom()
                 .setConnectionRequestTimeout(HTTP_TIMEOUT)
@@ -68,21 +79,138 @@ public class CodebeamerApiClient {
                 .build();
     }
 
-    public void createOrUpdateAttachment(String attachmentName, String newAttachmentContent) throws IOException {
-        String attachmentId = getAttachmentId(attachmentName);
+    /**
+     * @return true if both clients talk to the same codeBeamer with the same credentials
+     */
+    public boolean hasSameCredentials(CodebeamerApiClient other) {
+        // the registry hands out one pooled client per host and credentials
+        return client == other.client;
+    }
+
+    public void createOrUpdateAttachment(String attachmentName, String newAttachmentContent, TrendCsvCompactor compactor) throws IOException {
+        createOrUpdateAttachment(getAttachmentIds().get(attachmentName), attachmentName, newAttachmentContent, compactor);
+    }
+
+    /**
+     * Prepends the rows to the current segment of the trend attachment and updates the manifest, see
+     * {@link TrendSegmentManifest}. Only the manifest and the current segment are transferred.
+     */
+    public void appendToSegmentedAttachment(String attachmentName, String newAttachmentContent, int maxSegmentRows) throws IOException {
+        Map<String, String> attachmentIds = getAttachmentIds();
+        String manifestName = TrendSegmentManifest.getManifestName(attachmentName);
+        String manifestId = attachmentIds.get(manifestName);
+
+        TrendSegmentManifest manifest;
+        if (manifestId == null) {
+            manifest = new TrendSegmentManifest(attachmentName);
+            if (attachmentIds.containsKey(attachmentName)) {
+                // written before segmenting was turned on, kept as it is
+                manifest.addSealed(attachmentName);
+            }
+        } else {
+            manifest = TrendSegmentManifest.parse(attachmentName, getAttachmentText(manifestId));
+        }
+
+        String segmentName = manifest.append(newAttachmentContent, maxSegmentRows).getName();
+        createOrUpdateAttachment(attachmentIds.get(segmentName), segmentName, newAttachmentContent, null);
+
+        TrendCsvBody manifestBody = new TrendCsvBody(manifestName, manifest.format(), null, null);
+        if (manifestId == null) {
+            createAttachment(manifestName, manifestBody);
+        } else {
+            updateAttachment(manifestId, manifestName, manifestBody);
+        }
+    }
+
+    /**
+     * Uploads the content as the whole attachment, the old content is not downloaded.
+     */
+    public void replaceAttachment(String attachmentName, String content) throws IOException {
+        String attachmentId = getAttachmentIds().get(attachmentName);
+        TrendCsvBody body = new TrendCsvBody(attachmentName, content, null, null);
         if (attachmentId == null) {
-            createAttachment(attachmentName, newAttachmentContent);
+            createAttachment(attachmentName, body);
         } else {
-            String oldAttachmentContent = getAttachmentContent(attachmentId);
-            updateAttachment(attachmentId, attachmentName, oldAttachmentContent, newAttachmentContent);
+            updateAttachment(attachmentId, attachmentName, body);
+        }
+    }
+
+    /**
+     * @return the content of the attachment, null if the page has no such attachment
+     */
+    public String downloadAttachment(String attachmentName) throws IOException {
+        String attachmentId = getAttachmentIds().get(attachmentName);
+        return attachmentId == null ? null : getAttachmentText(attachmentId);
+    }
+
+    private void createOrUpdateAttachment(String attachmentId, String attachmentName, String newAttachmentContent,
+                                          TrendCsvCompactor compactor) throws IOException {
+        if (attachmentId == null) {
+            createAttachment(attachmentName, new TrendCsvBody(attachmentName, newAttachmentContent, null, null));
+        } else {
+            // the old content is streamed from the download straight into the upload, which holds two connections
+            // of the route until the upload is done, see CodebeamerClientRegistry#getAttachmentUpdatePermits
+            acquireAttachmentUpdatePermit();
+            try {
+                CloseableHttpResponse oldAttachmentContent = getAttachmentContent(attachmentId);
+                try {
+                    InputStream oldContent = oldAttachmentContent.getEntity().getContent();
+                    updateAttachment(attachmentId, attachmentName, new TrendCsvBody(attachmentName, newAttachmentContent, oldContent, compactor));
+                } finally {
+                    oldAttachmentContent.close();
+                }
+            } finally {
+                attachmentUpdatePermits.release();
+            }
+        }
+    }
+
+    private void acquireAttachmentUpdatePermit() throws InterruptedIOException {
+        try {
+            attachmentUpdatePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for another attachment update");
         }
     }
 
+    /**
+     * Fetches the page conditionally when a local copy is present, the full markup is only transferred when the
+     * page has changed since the plugin last read or wrote it.
+     */
     public String getWikiMarkup() throws IOException {
         String tmpUrl = String.format("%s/rest/wikipage/%s", baseUrl, wikiId);
-        String json = getWithResultCheck(tmpUrl);
-        MarkupDto markupDto = objectMapper.readValue(json, MarkupDto.class);
-        return markupDto.getMarkup();
+        WikiMarkupMirror.Entry mirrored = WikiMarkupMirror.get().get(baseUrl, wikiId);
+
+        HttpGet get = new HttpGet(tmpUrl);
+        if (mirrored != null && mirrored.getEtag() != null) {
+            get.addHeader(HttpHeaders.IF_NONE_MATCH, mirrored.getEtag());
+        }
+        if (mirrored != null && mirrored.getLastModified() != null) {
+            get.addHeader(HttpHeaders.IF_MODIFIED_SINCE, mirrored.getLastModified());
+        }
+
+        CloseableHttpResponse response = send(Endpoint.WIKI_GET, get);
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode == 304 && mirrored != null) {
+                EntityUtils.consume(response.getEntity());
+                return mirrored.getMarkup();
+            }
+
+            if (statusCode == 200) {
+                String json = new BasicResponseHandler().handleResponse(response);
+                MarkupDto markupDto = objectMapper.readValue(json, MarkupDto.class);
+                WikiMarkupMirror.get().put(baseUrl, wikiId, createMirrorEntry(response, markupDto.getMarkup()));
+                return markupDto.getMarkup();
+            }
+
+            EntityUtils.consume(response.getEntity());
+            throw new IOException(String.format("Could not connect to host: %s", tmpUrl));
+        } finally {
+            response.close();
+        }
     }
 
     public void updateWikiMarkup(String url, String wikiId, String markup) throws IOException {
@@ -93,16 +221,50 @@ public class CodebeamerApiClient {
         StringEntity stringEntity = new StringEntity(content,"UTF-8");
         stringEntity.setContentType("application/json");
         put.setEntity(stringEntity);
-        client.execute(put);
-        put.releaseConnection();
+
+        CloseableHttpResponse response = send(Endpoint.WIKI_PUT, put);
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
+
+            if (statusCode >= 200 && statusCode < 300) {
+                // without validators in the response the next fetch is a full one, which also refreshes them
+                WikiMarkupMirror.get().put(url, wikiId, createMirrorEntry(response, markup));
+            } else {
+                WikiMarkupMirror.get().remove(url, wikiId);
+                throw new HttpStatusException(put.getURI().toString(), statusCode);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    private WikiMarkupMirror.Entry createMirrorEntry(HttpResponse response, String markup) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        return new WikiMarkupMirror.Entry(markup,
+                etag == null ? null : etag.getValue(),
+                lastModified == null ? null : lastModified.getValue());
     }
 
     public String getUserId(String author)  throws IOException {
         String authorNoSpace = author.replaceAll(" ", "");
+        String cacheKey = UserIdCache.key(baseUrl, authorNoSpace);
+        UserIdCache.Entry cached = UserIdCache.get().getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached.getUserId();
+        }
+
         String tmpUrl = String.format("%s/rest/user/%s", baseUrl, authorNoSpace);
 
         //Fetch Page
-        String httpResult = get(tmpUrl);
+        String httpResult;
+        try {
+            httpResult = lookup(Endpoint.USER, tmpUrl);
+        } catch (HttpStatusException e) {
+            // neither found nor unknown, try again next time
+            return null;
+        }
         String result = null;
 
         if (httpResult != null) { //20X success
@@ -111,167 +273,313 @@ public class CodebeamerApiClient {
             result = uri.substring(uri.lastIndexOf("/") + 1);
         }
 
+        UserIdCache.get().put(cacheKey, result);
         return result;
     }
 
-    public String getCodeBeamerRepoUrlForGit(String repoUrl) throws IOException {
+    public String getCodeBeamerRepoUrlForGit(final String repoUrl) throws IOException {
+        String cacheKey = RepositoryCache.key(baseUrl, "git", repoUrl);
+        return RepositoryCache.get().lookup(cacheKey, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return findCodeBeamerRepoUrlForGit(repoUrl);
+            }
+        }, NOT_MANAGED_BY_CODEBEAMER);
+    }
+
+    public String getCodeBeamerRepoUrlForSVN(final String remote) {
+        String cacheKey = RepositoryCache.key(baseUrl, "svn", remote);
+        return RepositoryCache.get().lookup(cacheKey, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return findCodeBeamerRepoUrlForSVN(remote);
+            }
+        }, NOT_MANAGED_BY_CODEBEAMER);
+    }
+
+    private String findCodeBeamerRepoUrlForGit(String repoUrl) throws IOException {
         // Name of Git repository is the string after the last /
         String[] segments = repoUrl.split("/");
         String name = segments[segments.length - 1];
-        try {
-            String requestUrl = String.format("%s/git/%s", baseUrl, name);
-            String json = get(requestUrl);
-            if (json != null) {
-                RepositoryDto repositoryDto = objectMapper.readValue(json, RepositoryDto.class);
-                return String.format("[%s%s]", baseUrl, repositoryDto.getUri());
-            }
-        } catch (IOException ex) {
-            // TODO: logging
+        String requestUrl = String.format("%s/git/%s", baseUrl, name);
+        String json = lookup(Endpoint.REPOSITORY, requestUrl);
+        if (json != null) {
+            RepositoryDto repositoryDto = objectMapper.readValue(json, RepositoryDto.class);
+            return String.format("[%s%s]", baseUrl, repositoryDto.getUri());
         }
-        return "not managed by codeBeamer";
+        return NOT_MANAGED_BY_CODEBEAMER;
     }
 
-    public String getCodeBeamerRepoUrlForSVN(String remote) {
-        // We don't now for sure which part of the string is the name of the repository so we have to try until we succeed
+    private String findCodeBeamerRepoUrlForSVN(String remote) throws IOException {
+        // We don't now for sure which part of the string is the name of the repository so we probe every segment
+        // concurrently and take the first match in path order
         String[] segments = remote.split("/");
+        List<HttpGet> probes = new ArrayList<HttpGet>();
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        ExecutorService executor = ExecutorUtil.getLookupExecutor();
         // 0 = 'svn:' or 'http(s):', 1 = '', 2 = hostname
         for (int i = 3; i < segments.length; ++i) {
-            String segment = segments[i];
-            try {
-                String requestUrl = String.format("%s/svn/%s", baseUrl, segment);
-                String json = get(requestUrl);
-                if (json == null) {
-                    continue;
+            final HttpGet probe = new HttpGet(String.format("%s/svn/%s", baseUrl, segments[i]));
+            probes.add(probe);
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    String json = lookup(Endpoint.REPOSITORY, probe);
+                    return json == null ? null : objectMapper.readValue(json, RepositoryDto.class).getUri();
+                }
+            }));
+        }
+
+        IOException failure = null;
+        try {
+            for (Future<String> result : results) {
+                try {
+                    String repositoryUri = result.get();
+                    if (repositoryUri != null) {
+                        return String.format("[%s%s]", baseUrl, repositoryUri);
+                    }
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while looking up svn repository");
+        } finally {
+            // the answer is known, stop the probes that are still in flight
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isDone()) {
+                    probes.get(i).abort();
+                    results.get(i).cancel(true);
                 }
-                RepositoryDto repositoryDto = objectMapper.readValue(json, RepositoryDto.class);
-                return String.format("[%s%s]", baseUrl, repositoryDto.getUri());
-            } catch (IOException ex) {
-                continue;
             }
         }
-        return "not managed by codeBeamer";
+
+        if (failure != null) {
+            // one of the segments could not be checked, the answer is not final
+            throw failure;
+        }
+        return NOT_MANAGED_BY_CODEBEAMER;
     }
 
-    private String getAttachmentId(String attachmentName) throws IOException {
+    /**
+     * @return the id of each attachment of the page by name
+     */
+    private Map<String, String> getAttachmentIds() throws IOException {
         String url = String.format("%s/rest/wikipage/%s/attachments", baseUrl, wikiId);
-        String attachmentResponse = get(url);
+        String attachmentResponse = get(Endpoint.ATTACHMENT_LIST, url);
+        if (attachmentResponse == null) {
+            throw new IOException(String.format("Could not list attachments: %s", url));
+        }
 
         AttachmentDto[] attachments = objectMapper.readValue(attachmentResponse, AttachmentDto[].class);
-        String result = null;
+        Map<String, String> result = new HashMap<String, String>();
         for (AttachmentDto attachmentDto : attachments) {
-            if (attachmentDto.getName().equals(attachmentName)) {
-                result = attachmentDto.getId();
-                break;
+            if (!result.containsKey(attachmentDto.getName())) {
+                result.put(attachmentDto.getName(), attachmentDto.getId());
             }
         }
 
         return result;
     }
 
-    private String getAttachmentContent(String attachmentId) throws IOException {
+    private String getAttachmentText(String attachmentId) throws IOException {
+        CloseableHttpResponse response = getAttachmentContent(attachmentId);
+        try {
+            return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        } finally {
+            response.close();
+        }
+    }
+
+    private CloseableHttpResponse getAttachmentContent(String attachmentId) throws IOException {
         String url = String.format("%s/rest/attachment/%s/content", baseUrl, attachmentId);
-        return get(url);
+        CloseableHttpResponse response = send(Endpoint.ATTACHMENT_CONTENT, new HttpGet(url));
+
+        if (response.getStatusLine().getStatusCode() != 200 || response.getEntity() == null) {
+            response.close();
+            throw new IOException(String.format("Could not download attachment: %s", url));
+        }
+        return response;
     }
 
-    private boolean createAttachment(String attachmentName, String content) throws IOException {
+    private boolean createAttachment(String attachmentName, TrendCsvBody body) throws IOException {
         HttpPost post = new HttpPost(baseUrl + "/rest/attachment");
-        FileBody fileBody = new FileBody(createTempFile(content, null));
 
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
         builder.setMode(HttpMultipartMode.STRICT);
         String jsonContent = String.format("{\"parent\" : \"/wikipage/%s\", \"name\": \"%s\"}", wikiId, attachmentName);
         builder.addTextBody("body", jsonContent, ContentType.APPLICATION_JSON);
-        builder.addPart(attachmentName, fileBody);
+        builder.addPart(attachmentName, body);
         HttpEntity entity = builder.build();
 
         post.setEntity(entity);
-        client.execute(post);
-        post.releaseConnection();
+        execute(Endpoint.ATTACHMENT_UPLOAD, post);
         return true;
     }
 
-    private boolean updateAttachment(String attachmentId, String attachmentName, String oldContent, String newContent) throws IOException {
+    private boolean updateAttachment(String attachmentId, String attachmentName, TrendCsvBody body) throws IOException {
         HttpPut put = new HttpPut(baseUrl + "/rest/attachment");
-        FileBody fileBody = new FileBody(createTempFile(newContent, oldContent));
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
         builder.setMode(HttpMultipartMode.STRICT);
         String jsonContent = String.format("{\"uri\" : \"/attachment/%s\"}", attachmentId);
         builder.addTextBody("body", jsonContent, ContentType.APPLICATION_JSON);
-        builder.addPart(attachmentName, fileBody);
+        builder.addPart(attachmentName, body);
         HttpEntity entity = builder.build();
 
         put.setEntity(entity);
-        client.execute(put);
-        put.releaseConnection();
+        execute(Endpoint.ATTACHMENT_UPLOAD, put);
         return true;
     }
 
-    private File createTempFile(String newContent, String oldContent) throws IOException{
-        final File tempFile = File.createTempFile("tmpfile", "csv");
-        tempFile.deleteOnExit();
-        FileWriter fileWriter = null;
+    private void execute(Endpoint endpoint, HttpRequestBase request) throws IOException {
+        CloseableHttpResponse response = send(endpoint, request);
+        try {
+            // the entity has to be consumed, otherwise the connection is not returned to the pool
+            EntityUtils.consume(response.getEntity());
+        } finally {
+            response.close();
+        }
+    }
 
+    private String get(Endpoint endpoint, String url) throws IOException {
+        CloseableHttpResponse response = send(endpoint, new HttpGet(url));
         try {
-            fileWriter = new FileWriter(tempFile);
-            fileWriter.append(newContent);
-            if (oldContent != null) {
-                fileWriter.append(oldContent);
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode == 200) {
+                return new BasicResponseHandler().handleResponse(response);
             }
+
+            EntityUtils.consume(response.getEntity());
+            return null;
         } finally {
-            try {
-                fileWriter.flush();
-                fileWriter.close();
-            } catch (IOException e) {
-                System.out.println("Error while flushing/closing fileWriter !!!");
-                e.printStackTrace();
-            }
+            response.close();
         }
+    }
 
-        return tempFile;
+    /**
+     * @return the response body, or null if codeBeamer does not know the requested entity
+     * @throws HttpStatusException on any other status, the result must not be taken as final
+     */
+    private String lookup(Endpoint endpoint, String url) throws IOException {
+        return lookup(endpoint, new HttpGet(url));
     }
 
-    private String get(String url) throws IOException {
-        HttpGet get = null;
-        String result = null;
+    private String lookup(Endpoint endpoint, HttpGet get) throws IOException {
+        String url = get.getURI().toString();
+        CloseableHttpResponse response = send(endpoint, get);
         try {
-        	get = new HttpGet(url);
-	        get.setConfig(requestConfig);
-	        HttpResponse response = client.execute(get);
-	        int statusCode = response.getStatusLine().getStatusCode();
-	
-	        if (statusCode == 200) {
-	            result = new BasicResponseHandler().handleResponse(response);
-	        }
-	
-	        get.releaseConnection();
-	
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode == 200) {
+                return new BasicResponseHandler().handleResponse(response);
+            }
+
+            EntityUtils.consume(response.getEntity());
+            if (statusCode == 404) {
+                return null;
+            }
+            throw new HttpStatusException(url, statusCode);
         } finally {
-        	if (get != null) {
-    			get.releaseConnection();
-    		}
+            response.close();
         }
-        return result;
     }
 
-    private String getWithResultCheck(String url) throws IOException {
-    	String result = "";
-    	HttpGet get = null;
-    	try {
-	        get = new HttpGet(url);
-	        get.setConfig(requestConfig);
-	        HttpResponse response = client.execute(get);
-	        int statusCode = response.getStatusLine().getStatusCode();
-	
-	        if (statusCode == 200) {
-	            result = new BasicResponseHandler().handleResponse(response);
-	        } else {
-	        	throw new IOException(String.format("Could not connect to host: %s", url));
-	        }
-    	} finally {
-    		if (get != null) {
-    			get.releaseConnection();
-    		}
-    	}
-        return result;
+    /**
+     * Sends the request through the host's circuit breaker. Idempotent GETs are retried with exponential backoff and
+     * jitter on connection failures and server errors, the last server error response is returned to the caller.
+     * Every attempt is recorded in the endpoint's {@link CodebeamerMetrics}.
+     *
+     * @throws CircuitOpenException if codeBeamer is considered unavailable, nothing is sent then
+     */
+    CloseableHttpResponse send(Endpoint endpoint, HttpRequestBase request) throws IOException {
+        CodebeamerMetrics.EndpointStats stats = CodebeamerMetrics.get(endpoint);
+        request.setConfig(requestConfig);
+        boolean retryable = request instanceof HttpGet;
+        if (request instanceof HttpEntityEnclosingRequestBase) {
+            HttpEntityEnclosingRequestBase enclosingRequest = (HttpEntityEnclosingRequestBase) request;
+            if (enclosingRequest.getEntity() != null) {
+                enclosingRequest.setEntity(new CountingEntity(enclosingRequest.getEntity(), stats));
+            }
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                circuitBreaker.acquirePermission();
+            } catch (CircuitOpenException e) {
+                stats.recordRejected();
+                throw e;
+            }
+
+            // a half-open breaker lets this attempt through as its only trial, it must be given back whatever happens
+            boolean outcomeRecorded = false;
+            try {
+                long start = System.currentTimeMillis();
+                CloseableHttpResponse response;
+                try {
+                    response = client.execute(request);
+                } catch (IOException e) {
+                    if (request.isAborted()) {
+                        // cancelled by us, says nothing about codeBeamer
+                        outcomeRecorded = true;
+                        circuitBreaker.release();
+                        throw e;
+                    }
+                    long duration = System.currentTimeMillis() - start;
+                    if (e instanceof InterruptedIOException) {
+                        stats.recordTimeout(duration);
+                    } else {
+                        stats.recordError(duration);
+                    }
+                    outcomeRecorded = true;
+                    circuitBreaker.onFailure(duration);
+                    if (!retryable || attempt >= MAX_RETRIES) {
+                        throw e;
+                    }
+                    backoff(attempt);
+                    continue;
+                }
+
+                long duration = System.currentTimeMillis() - start;
+                int statusCode = response.getStatusLine().getStatusCode();
+                stats.recordResponse(statusCode, duration);
+                if (response.getEntity() != null) {
+                    response.setEntity(new CountingEntity(response.getEntity(), stats));
+                }
+
+                if (statusCode < 500) {
+                    outcomeRecorded = true;
+                    circuitBreaker.onSuccess(duration);
+                    return response;
+                }
+
+                outcomeRecorded = true;
+                circuitBreaker.onFailure(duration);
+                if (!retryable || attempt >= MAX_RETRIES || request.isAborted()) {
+                    return response;
+                }
+                EntityUtils.consume(response.getEntity());
+                response.close();
+                backoff(attempt);
+            } finally {
+                if (!outcomeRecorded) {
+                    // e.g. a runtime exception of the client, says nothing about codeBeamer
+                    circuitBreaker.release();
+                }
+            }
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedIOException {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+        // equal jitter, keeps at least half of the delay but spreads the retries of concurrent builds
+        long sleep = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry codeBeamer request");
+        }
     }
 }
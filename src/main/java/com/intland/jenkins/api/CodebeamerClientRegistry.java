@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jcifs.util.Base64;
+
+/**
+ * Process-wide registry of pooled http clients, one per codeBeamer base url and credential pair.
+ * Connections are kept alive between builds, idle connections are evicted periodically and
+ * every pool is shut down when Jenkins stops.
+ */
+public class CodebeamerClientRegistry {
+    private static final Logger LOGGER = Logger.getLogger(CodebeamerClientRegistry.class.getName());
+
+    private static final int MAX_TOTAL_CONNECTIONS = Integer.getInteger(CodebeamerClientRegistry.class.getName() + ".maxTotal", 20);
+    private static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger(CodebeamerClientRegistry.class.getName() + ".maxPerRoute", 5);
+    private static final long KEEP_ALIVE_MILLIS = Long.getLong(CodebeamerClientRegistry.class.getName() + ".keepAlive", 30000L);
+    private static final long IDLE_TIMEOUT_MILLIS = Long.getLong(CodebeamerClientRegistry.class.getName() + ".idleTimeout", 60000L);
+    // an attachment update holds two connections, the download is streamed into the upload; one connection of the
+    // route is always left to the other requests
+    private static final int MAX_ATTACHMENT_UPDATES = Math.max(1, (MAX_CONNECTIONS_PER_ROUTE - 1) / 2);
+
+    private static final Map<String, PooledClient> CLIENTS = new HashMap<String, PooledClient>();
+
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : KEEP_ALIVE_MILLIS;
+        }
+    };
+
+    public static synchronized CloseableHttpClient getClient(String baseUrl, String username, String password) {
+        return getPooledClient(baseUrl, username, password).client;
+    }
+
+    /**
+     * @return the permits of the pooled client for attachment updates, each update takes one for as long as it holds
+     * both of its connections, so concurrent updates can't exhaust the connections of the route
+     */
+    public static synchronized Semaphore getAttachmentUpdatePermits(String baseUrl, String username, String password) {
+        return getPooledClient(baseUrl, username, password).attachmentUpdates;
+    }
+
+    private static PooledClient getPooledClient(String baseUrl, String username, String password) {
+        String key = getKey(baseUrl, username, password);
+        PooledClient pooledClient = CLIENTS.get(key);
+        if (pooledClient == null) {
+            pooledClient = new PooledClient(username, password);
+            CLIENTS.put(key, pooledClient);
+        }
+        return pooledClient;
+    }
+
+    public static synchronized void closeIdleConnections() {
+        for (PooledClient pooledClient : CLIENTS.values()) {
+            pooledClient.connectionManager.closeExpiredConnections();
+            pooledClient.connectionManager.closeIdleConnections(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Terminator
+    public static synchronized void shutdown() {
+        for (PooledClient pooledClient : CLIENTS.values()) {
+            try {
+                pooledClient.client.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close codeBeamer http client", e);
+            }
+        }
+        CLIENTS.clear();
+    }
+
+    private static String getKey(String baseUrl, String username, String password) {
+        // the password only takes part as a digest so the registry never holds it as a map key
+        return baseUrl + "\n" + username + "\n" + Util.getDigestOf(password);
+    }
+
+    private static class PooledClient {
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient client;
+        private final Semaphore attachmentUpdates = new Semaphore(MAX_ATTACHMENT_UPDATES, true);
+
+        private PooledClient(String username, String password) {
+            // http://stackoverflow.com/questions/9539141/httpclient-sends-out-two-requests-when-using-basic-auth
+            final String authHeader = "Basic " + Base64.encode((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+
+            HashSet<Header> defaultHeaders = new HashSet<Header>();
+            defaultHeaders.add(new BasicHeader(HttpHeaders.AUTHORIZATION, authHeader));
+
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+            connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+
+            client = HttpClientBuilder
+                    .create()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+                    .setDefaultHeaders(defaultHeaders)
+                    .build();
+        }
+    }
+
+    @Extension
+    public static class IdleConnectionEvictor extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(30);
+        }
+
+        @Override
+        protected void doRun() {
+            closeIdleConnections();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Publishes {@link CodebeamerMetrics} through the Metrics plugin, if it is installed, as gauges named
+ * <code>codebeamer.http.&lt;endpoint&gt;.&lt;measure&gt;</code>.
+ */
+@Extension(optional = true)
+public class CodebeamerMetricProvider extends MetricProvider {
+    private enum Measure {
+        CALLS("calls") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getCalls();
+            }
+        },
+        P50("latency.p50") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getLatency().getPercentile(50);
+            }
+        },
+        P90("latency.p90") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getLatency().getPercentile(90);
+            }
+        },
+        P99("latency.p99") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getLatency().getPercentile(99);
+            }
+        },
+        MAX("latency.max") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getLatency().getMax();
+            }
+        },
+        STATUS_2XX("status.2xx") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getStatusCount(2);
+            }
+        },
+        STATUS_3XX("status.3xx") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getStatusCount(3);
+            }
+        },
+        STATUS_4XX("status.4xx") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getStatusCount(4);
+            }
+        },
+        STATUS_5XX("status.5xx") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getStatusCount(5);
+            }
+        },
+        TIMEOUTS("timeouts") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getTimeouts();
+            }
+        },
+        ERRORS("errors") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getErrors();
+            }
+        },
+        REJECTED("rejected") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getRejected();
+            }
+        },
+        BYTES_SENT("bytes.sent") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getBytesSent();
+            }
+        },
+        BYTES_RECEIVED("bytes.received") {
+            long of(CodebeamerMetrics.EndpointStats stats) {
+                return stats.getBytesReceived();
+            }
+        };
+
+        private final String name;
+
+        Measure(String name) {
+            this.name = name;
+        }
+
+        abstract long of(CodebeamerMetrics.EndpointStats stats);
+    }
+
+    private final MetricSet metricSet;
+
+    public CodebeamerMetricProvider() {
+        final Map<String, Metric> metrics = new HashMap<String, Metric>();
+        for (final CodebeamerMetrics.EndpointStats stats : CodebeamerMetrics.getAll()) {
+            String endpoint = stats.getEndpoint().name().toLowerCase(Locale.ROOT);
+            for (final Measure measure : Measure.values()) {
+                metrics.put(MetricRegistry.name("codebeamer.http", endpoint, measure.name), new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return measure.of(stats);
+                    }
+                });
+            }
+        }
+
+        metricSet = new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() {
+                return metrics;
+            }
+        };
+    }
+
+    @Override
+    public MetricSet getMetricSet() {
+        return metricSet;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import com.intland.jenkins.util.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide statistics of the calls made to codeBeamer, per endpoint. Latency is the time until the response
+ * headers arrived, streamed bodies are only accounted for in the byte counters.
+ */
+public class CodebeamerMetrics {
+    public enum Endpoint {
+        WIKI_GET("Wiki page GET"),
+        WIKI_PUT("Wiki page PUT"),
+        ATTACHMENT_LIST("Attachment list"),
+        ATTACHMENT_CONTENT("Attachment content"),
+        ATTACHMENT_UPLOAD("Attachment upload"),
+        USER("User lookup"),
+        REPOSITORY("Repository lookup");
+
+        private final String displayName;
+
+        Endpoint(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private static final Map<Endpoint, EndpointStats> STATS = new EnumMap<Endpoint, EndpointStats>(Endpoint.class);
+
+    static {
+        for (Endpoint endpoint : Endpoint.values()) {
+            STATS.put(endpoint, new EndpointStats(endpoint));
+        }
+    }
+
+    public static EndpointStats get(Endpoint endpoint) {
+        return STATS.get(endpoint);
+    }
+
+    public static Iterable<EndpointStats> getAll() {
+        return STATS.values();
+    }
+
+    public static class EndpointStats {
+        private final Endpoint endpoint;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        // 1xx to 5xx
+        private final AtomicLong[] statusClasses = new AtomicLong[6];
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        private EndpointStats(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new AtomicLong();
+            }
+        }
+
+        void recordResponse(int statusCode, long durationMillis) {
+            latency.record(durationMillis);
+            int statusClass = statusCode / 100;
+            if (statusClass > 0 && statusClass < statusClasses.length) {
+                statusClasses[statusClass].incrementAndGet();
+            }
+        }
+
+        void recordTimeout(long durationMillis) {
+            latency.record(durationMillis);
+            timeouts.incrementAndGet();
+        }
+
+        void recordError(long durationMillis) {
+            latency.record(durationMillis);
+            errors.incrementAndGet();
+        }
+
+        void recordRejected() {
+            rejected.incrementAndGet();
+        }
+
+        void addBytesSent(long bytes) {
+            bytesSent.addAndGet(bytes);
+        }
+
+        void addBytesReceived(long bytes) {
+            bytesReceived.addAndGet(bytes);
+        }
+
+        public Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        public String getDisplayName() {
+            return endpoint.getDisplayName();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        public long getStatusCount(int statusClass) {
+            return statusClass > 0 && statusClass < statusClasses.length ? statusClasses[statusClass].get() : 0;
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+    }
+}
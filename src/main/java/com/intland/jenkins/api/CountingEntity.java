@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Adds the bytes actually written or read through the wrapped entity to the endpoint's counters, which also covers
+ * chunked bodies of unknown length.
+ */
+class CountingEntity extends HttpEntityWrapper {
+    private final CodebeamerMetrics.EndpointStats stats;
+
+    CountingEntity(HttpEntity wrappedEntity, CodebeamerMetrics.EndpointStats stats) {
+        super(wrappedEntity);
+        this.stats = stats;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ProxyInputStream(super.getContent()) {
+            @Override
+            protected void afterRead(int n) {
+                if (n > 0) {
+                    stats.addBytesReceived(n);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        super.writeTo(new ProxyOutputStream(outstream) {
+            @Override
+            protected void afterWrite(int n) {
+                stats.addBytesSent(n);
+            }
+        });
+    }
+}
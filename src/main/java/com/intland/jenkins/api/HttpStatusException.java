@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import java.io.IOException;
+
+/**
+ * Signals that codeBeamer answered a request with an unexpected status code.
+ */
+public class HttpStatusException extends IOException {
+    private final int statusCode;
+
+    public HttpStatusException(String url, int statusCode) {
+        super(String.format("Unexpected status %d from %s", statusCode, url));
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import com.intland.jenkins.util.ExecutorUtil;
+import com.intland.jenkins.util.PluginUtil;
+import hudson.XmlFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of scm remote url to codeBeamer repository, including the "not managed by codeBeamer" answer.
+ * It is stored in the plugin's directory under the Jenkins root, so it survives restarts. Answered lookups are
+ * returned immediately, entries older than the time to live are refreshed in the background.
+ */
+public class RepositoryCache {
+    private static final Logger LOGGER = Logger.getLogger(RepositoryCache.class.getName());
+    private static final long TTL_MILLIS = Long.getLong(RepositoryCache.class.getName() + ".ttl", TimeUnit.DAYS.toMillis(1));
+    private static final String FILE_NAME = "repository-cache.xml";
+
+    private static RepositoryCache instance;
+
+    private final XmlFile file;
+    private final Map<String, Entry> entries;
+    private final Set<String> refreshing = new HashSet<String>();
+
+    RepositoryCache(XmlFile file) {
+        this.file = file;
+        this.entries = load(file);
+    }
+
+    public static synchronized RepositoryCache get() {
+        if (instance == null) {
+            File dataDir = PluginUtil.getPluginDataDir();
+            instance = new RepositoryCache(dataDir == null ? null : new XmlFile(new File(dataDir, FILE_NAME)));
+        }
+        return instance;
+    }
+
+    public static String key(String baseUrl, String scmType, String remote) {
+        return scmType + ":" + baseUrl + "\n" + remote;
+    }
+
+    /**
+     * @param loader looks the repository up in codeBeamer, throws an exception if the answer is not final
+     * @param fallback returned when the repository is not cached and the loader fails
+     */
+    public String lookup(String key, Callable<String> loader, String fallback) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.refreshedAt > TTL_MILLIS) {
+                refreshInBackground(key, loader);
+            }
+            return entry.repository;
+        }
+
+        try {
+            return load(key, loader);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not look up codeBeamer repository", e);
+            return fallback;
+        }
+    }
+
+    private String load(String key, Callable<String> loader) throws Exception {
+        String repository = loader.call();
+        synchronized (this) {
+            entries.put(key, new Entry(repository, System.currentTimeMillis()));
+            save();
+        }
+        return repository;
+    }
+
+    private void refreshInBackground(final String key, final Callable<String> loader) {
+        synchronized (this) {
+            if (!refreshing.add(key)) {
+                return;
+            }
+        }
+
+        ExecutorUtil.getRefreshExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load(key, loader);
+                } catch (Exception e) {
+                    // keep the previous answer until the next attempt
+                    LOGGER.log(Level.FINE, "Could not refresh codeBeamer repository", e);
+                } finally {
+                    synchronized (RepositoryCache.this) {
+                        refreshing.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.write(new HashMap<String, Entry>(entries));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save codeBeamer repository cache", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Entry> load(XmlFile file) {
+        if (file != null && file.exists()) {
+            try {
+                return (Map<String, Entry>) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not load codeBeamer repository cache, starting empty", e);
+            }
+        }
+        return new HashMap<String, Entry>();
+    }
+
+    private static class Entry {
+        private final String repository;
+        private final long refreshedAt;
+
+        private Entry(String repository, long refreshedAt) {
+            this.repository = repository;
+            this.refreshedAt = refreshedAt;
+        }
+    }
+}
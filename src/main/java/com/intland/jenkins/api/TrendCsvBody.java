@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import com.intland.jenkins.util.TrendCsvCompactor;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Multipart body of a trend csv attachment. The new rows are written first, the old content is piped through
+ * from the still open download, optionally through the retention policy. Nothing is buffered on disk.
+ */
+class TrendCsvBody extends AbstractContentBody {
+    private static final ContentType TEXT_CSV = ContentType.create("text/csv", StandardCharsets.UTF_8);
+
+    private final String filename;
+    private final byte[] newContent;
+    private final InputStream oldContent;
+    private final TrendCsvCompactor compactor;
+
+    TrendCsvBody(String filename, String newContent, InputStream oldContent, TrendCsvCompactor compactor) {
+        super(TEXT_CSV);
+        this.filename = filename;
+        this.newContent = newContent.getBytes(StandardCharsets.UTF_8);
+        this.oldContent = oldContent;
+        this.compactor = compactor;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        if (oldContent == null) {
+            out.write(newContent);
+        } else if (compactor == null) {
+            out.write(newContent);
+            IOUtils.copy(oldContent, out);
+        } else {
+            InputStream content = new SequenceInputStream(new ByteArrayInputStream(newContent), oldContent);
+            // the writer is only flushed, closing it would close the multipart stream
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            compactor.compact(new InputStreamReader(content, StandardCharsets.UTF_8), writer);
+            writer.flush();
+        }
+        out.flush();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        // unknown up front, the request is sent chunked
+        return -1;
+    }
+}
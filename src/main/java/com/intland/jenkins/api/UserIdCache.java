@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controller-wide, size bounded LRU cache of commit author to codeBeamer user id. Authors unknown to codeBeamer
+ * (bots, CI accounts) are cached as well, with their own, usually shorter, time to live.
+ */
+public class UserIdCache {
+    private static final int MAX_SIZE = Integer.getInteger(UserIdCache.class.getName() + ".maxSize", 1000);
+    private static final long TTL_MILLIS = Long.getLong(UserIdCache.class.getName() + ".ttl", TimeUnit.HOURS.toMillis(1));
+    private static final long NOT_FOUND_TTL_MILLIS = Long.getLong(UserIdCache.class.getName() + ".notFoundTtl", TimeUnit.MINUTES.toMillis(10));
+
+    private static final UserIdCache INSTANCE = new UserIdCache(MAX_SIZE, TTL_MILLIS, NOT_FOUND_TTL_MILLIS);
+
+    private final Map<String, Entry> entries;
+    private final long ttlMillis;
+    private final long notFoundTtlMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong notFoundHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    UserIdCache(final int maxSize, long ttlMillis, long notFoundTtlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.notFoundTtlMillis = notFoundTtlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserIdCache.Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static UserIdCache get() {
+        return INSTANCE;
+    }
+
+    public static String key(String baseUrl, String author) {
+        return baseUrl + "\n" + author;
+    }
+
+    /**
+     * @return the cached entry or null if the author has to be looked up
+     */
+    public synchronized Entry getIfPresent(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        if (entry.userId == null) {
+            notFoundHits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    public synchronized void put(String key, String userId) {
+        long ttl = userId == null ? notFoundTtlMillis : ttlMillis;
+        entries.put(key, new Entry(userId, System.currentTimeMillis() + ttl));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getNotFoundHits() {
+        return notFoundHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String getSummary() {
+        return String.format("codeBeamer user cache: %d hits (%d not found), %d misses, %d entries",
+                getHits(), getNotFoundHits(), getMisses(), size());
+    }
+
+    public static class Entry {
+        private final String userId;
+        private final long expiresAt;
+
+        private Entry(String userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the codeBeamer user id, null if codeBeamer does not know the author
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.api;
+
+import com.intland.jenkins.util.PluginUtil;
+import hudson.Util;
+import hudson.XmlFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local copy of the last wiki markup written or read by the plugin, together with the http validators codeBeamer
+ * reported for it. It lets the page be fetched conditionally, so the full markup is only
+ * transferred again when somebody else has edited the page.
+ */
+public class WikiMarkupMirror {
+    private static final Logger LOGGER = Logger.getLogger(WikiMarkupMirror.class.getName());
+    private static final String DIRECTORY_NAME = "wiki";
+
+    private static final WikiMarkupMirror INSTANCE = new WikiMarkupMirror();
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public static WikiMarkupMirror get() {
+        return INSTANCE;
+    }
+
+    public synchronized Entry get(String baseUrl, String wikiId) {
+        String key = key(baseUrl, wikiId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = load(getFile(key));
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    public synchronized void put(String baseUrl, String wikiId, Entry entry) {
+        String key = key(baseUrl, wikiId);
+        entries.put(key, entry);
+
+        XmlFile file = getFile(key);
+        if (file != null) {
+            try {
+                file.write(entry);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save wiki markup mirror", e);
+            }
+        }
+    }
+
+    public synchronized void remove(String baseUrl, String wikiId) {
+        String key = key(baseUrl, wikiId);
+        entries.remove(key);
+
+        XmlFile file = getFile(key);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static String key(String baseUrl, String wikiId) {
+        return Util.getDigestOf(baseUrl) + "-" + wikiId;
+    }
+
+    private static XmlFile getFile(String key) {
+        File dataDir = PluginUtil.getPluginDataDir();
+        if (dataDir == null) {
+            return null;
+        }
+        return new XmlFile(new File(new File(dataDir, DIRECTORY_NAME), key + ".xml"));
+    }
+
+    private static Entry load(XmlFile file) {
+        if (file != null && file.exists()) {
+            try {
+                return (Entry) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not load wiki markup mirror, fetching the page again", e);
+            }
+        }
+        return null;
+    }
+
+    public static class Entry {
+        private final String markup;
+        private final String etag;
+        private final String lastModified;
+
+        public Entry(String markup, String etag, String lastModified) {
+            this.markup = markup;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getMarkup() {
+            return markup;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -8,24 +8,41 @@ import com.intland.jenkins.PostBuildScript;
 import com.intland.jenkins.util.TimeUtil;
 import com.intland.jenkins.collector.dto.BuildDto;
 import hudson.model.AbstractBuild;
+import hudson.model.Executor;
+import hudson.model.Node;
+import hudson.model.Run;
 import jenkins.model.Jenkins;
 import java.text.SimpleDateFormat;
 
 public class BuildDataCollector {
-    public static BuildDto collectBuildData(AbstractBuild<?, ?> build, long currentTime) {
+    public static BuildDto collectBuildData(Run<?, ?> build, long currentTime) {
         SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         long startTime = build.getStartTimeInMillis();
         long duration = currentTime - startTime;
 
         String pluginVersion = Jenkins.getInstance().getPlugin(PostBuildScript.PLUGIN_SHORTNAME).getWrapper().getVersion();
-        String projectUrl = Jenkins.getInstance().getRootUrl() + build.getProject().getUrl();
+        String projectUrl = Jenkins.getInstance().getRootUrl() + build.getParent().getUrl();
         String buildUrl = Jenkins.getInstance().getRootUrl() + build.getUrl();
         String buildDuration = TimeUtil.formatMillisIntoMinutesAndSeconds(duration);
         String formattedBuildTime = simpleDateFormat.format(currentTime);
         String buildNumber = String.valueOf(build.getNumber());
-        String builtOn = build.getBuiltOn().getDisplayName();
+        String builtOn = getBuiltOn(build);
 
         return new BuildDto(pluginVersion, projectUrl, buildUrl, buildDuration,
                 formattedBuildTime, buildNumber, builtOn, startTime, duration);
     }
+
+    /**
+     * A Pipeline build has no single node, it is reported as running where its flow runs, the controller.
+     */
+    private static String getBuiltOn(Run<?, ?> build) {
+        if (build instanceof AbstractBuild) {
+            Node node = ((AbstractBuild<?, ?>) build).getBuiltOn();
+            if (node != null) {
+                return node.getDisplayName();
+            }
+        }
+        Executor executor = build.getExecutor();
+        return executor == null ? "" : executor.getOwner().getDisplayName();
+    }
 }
@@ -3,13 +3,14 @@
  */
 package com.intland.jenkins.collector;
 
+import com.intland.jenkins.action.PublishTimingAction;
 import com.intland.jenkins.api.CodebeamerApiClient;
 import com.intland.jenkins.collector.dto.*;
 import com.intland.jenkins.util.CsvUtil;
 import com.intland.jenkins.util.PluginUtil;
 import com.intland.jenkins.util.WikiMarkupBuilder;
-import hudson.model.AbstractBuild;
-import hudson.model.BuildListener;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.plugins.performance.PerformanceBuildAction;
 
 import java.io.IOException;
@@ -22,54 +23,121 @@ public class CodebeamerCollector {
     private static final String START_OF_BUILD = "//DO NOT MODIFY";
     private static final int DEFAULT_KEEP_BUILD_NUMBER = 50;
 
-    public static CodebeamerDto collectCodebeamerData(AbstractBuild<?, ?> build, BuildListener listener, CodebeamerApiClient apiClient,
+    public static CodebeamerDto collectCodebeamerData(Run<?, ?> build, TaskListener listener, CodebeamerApiClient apiClient,
                                                       long currentTime, Integer keepBuildNumber) throws IOException {
+        return collectCodebeamerData(build, listener, apiClient, currentTime, keepBuildNumber, null);
+    }
+
+    /**
+     * @param markupTemplate template configured on the job, the built-in one is used when empty
+     */
+    public static CodebeamerDto collectCodebeamerData(Run<?, ?> build, TaskListener listener, CodebeamerApiClient apiClient,
+                                                      long currentTime, Integer keepBuildNumber, String markupTemplate) throws IOException {
         String currentMarkupContent = apiClient.getWikiMarkup();
 
-        String newMarkupContent;
-        String newAttachmentContent;
-        String attachmentName;
+        PublishDataDto publishDataDto = collectPublishData(build, listener, apiClient, currentTime);
+        CodebeamerDto buildSection = renderBuildSection(publishDataDto, markupTemplate);
+        String markup = mergeBuildSection(currentMarkupContent, buildSection, keepBuildNumber);
+
+        return new CodebeamerDto(markup, buildSection.getAttachmentContent(), buildSection.getAttachmentName());
+    }
+
+    public static PublishDataDto collectPublishData(Run<?, ?> build, TaskListener listener, CodebeamerApiClient apiClient,
+                                                    long currentTime) throws IOException {
+        return collectPublishData(build, listener, apiClient, currentTime, new PublishTimingAction());
+    }
+
+    public static PublishDataDto collectPublishData(Run<?, ?> build, TaskListener listener, CodebeamerApiClient apiClient,
+                                                    long currentTime, PublishTimingAction timing) throws IOException {
+        return collectPublishData(build, listener, apiClient, currentTime, timing, null);
+    }
 
+    /**
+     * Collects everything needed from the build, without touching the wiki page.
+     *
+     * @param timing receives the time spent in each collector
+     * @param maxRenderedChanges number of changes listed in full, see {@link ScmDataCollector}
+     */
+    public static PublishDataDto collectPublishData(Run<?, ?> build, TaskListener listener, CodebeamerApiClient apiClient,
+                                                    long currentTime, PublishTimingAction timing, Integer maxRenderedChanges) throws IOException {
+        long start = System.currentTimeMillis();
         BuildDto buildDto = BuildDataCollector.collectBuildData(build, currentTime);
-        ScmDto scmDto = ScmDataCollector.collectScmData(build, apiClient);
+        timing.recordSince(PublishTimingAction.Phase.BUILD_DATA, start);
 
-        currentMarkupContent = truncateWikiMarkup(currentMarkupContent, keepBuildNumber);
+        ScmDto scmDto = ScmDataCollector.collectScmData(build, apiClient, timing, maxRenderedChanges);
 
+        start = System.currentTimeMillis();
         if (PluginUtil.isPerformancePluginInstalled() && build.getAction(PerformanceBuildAction.class) != null) {
-            attachmentName = PERFORMANCE_ATTACHMENT_NAME;
-            currentMarkupContent = insertChartIfNoPluginPresent(currentMarkupContent, PERFORMANCE_DEFAULT_MARKUP);
-
             PerformanceDto performanceDto = PerformanceDataCollector.collectPerformanceDto(build);
-            newAttachmentContent = CsvUtil.convertDtoToPerformanceRow(performanceDto, currentTime);
+            timing.recordSince(PublishTimingAction.Phase.PERFORMANCE, start);
+            return new PublishDataDto(buildDto, scmDto, null, performanceDto, currentTime);
+        } else {
+            TestResultDto testResultDto = TestResultCollector.collectTestResultData(build, buildDto, listener);
+            timing.recordSince(PublishTimingAction.Phase.TEST_RESULTS, start);
+            return new PublishDataDto(buildDto, scmDto, testResultDto, null, currentTime);
+        }
+    }
+
+    /**
+     * @return the wiki section of the build as markup and its row of the trend attachment
+     */
+    public static CodebeamerDto renderBuildSection(PublishDataDto publishDataDto, String markupTemplate) {
+        BuildDto buildDto = publishDataDto.getBuildDto();
+        ScmDto scmDto = publishDataDto.getScmDto();
+        long currentTime = publishDataDto.getCurrentTime();
+
+        if (publishDataDto.isPerformanceResult()) {
+            PerformanceDto performanceDto = publishDataDto.getPerformanceDto();
+            String newAttachmentContent = CsvUtil.convertDtoToPerformanceRow(performanceDto, currentTime);
 
-            newMarkupContent = new WikiMarkupBuilder()
-                    .initWithPerformanceTemplate()
+            String newMarkupContent = initWikiMarkupBuilder(markupTemplate, false)
                     .withBuildInfo(buildDto)
                     .withPerformanceInfo(performanceDto)
                     .withScmInfo(scmDto)
                     .build();
+            return new CodebeamerDto(newMarkupContent, newAttachmentContent, PERFORMANCE_ATTACHMENT_NAME);
         } else {
-            attachmentName = TESTREPORT_ATTACHMENT_NAME;
-            currentMarkupContent = insertChartIfNoPluginPresent(currentMarkupContent, TESTREPORT_DEFAULT_MARKUP);
+            TestResultDto testResultDto = publishDataDto.getTestResultDto();
+            String newAttachmentContent = CsvUtil.convertDtoToTestResultRow(buildDto, testResultDto, currentTime);
 
-            TestResultDto testResultDto = TestResultCollector.collectTestResultData(build, listener);
-            newAttachmentContent = CsvUtil.convertDtoToTestResultRow(buildDto, testResultDto, currentTime);
-
-            newMarkupContent = new WikiMarkupBuilder()
-                    .initWithTestReportTemplate()
+            String newMarkupContent = initWikiMarkupBuilder(markupTemplate, true)
                     .withBuildInfo(buildDto)
                     .withTestReportInfo(testResultDto)
                     .withScmInfo(scmDto)
                     .build();
+            return new CodebeamerDto(newMarkupContent, newAttachmentContent, TESTREPORT_ATTACHMENT_NAME);
         }
+    }
+
+    /**
+     * Truncates the page to the builds to keep and inserts the new build section right after the chart plugin.
+     */
+    public static String mergeBuildSection(String currentMarkupContent, CodebeamerDto buildSection, Integer keepBuildNumber) {
+        String defaultMarkup = PERFORMANCE_ATTACHMENT_NAME.equals(buildSection.getAttachmentName())
+                ? PERFORMANCE_DEFAULT_MARKUP : TESTREPORT_DEFAULT_MARKUP;
 
-        StringBuilder markupBuilder = new StringBuilder(currentMarkupContent);
-        markupBuilder.insert(markupBuilder.indexOf("}]") + 2, newMarkupContent);
+        currentMarkupContent = truncateWikiMarkup(currentMarkupContent, keepBuildNumber);
+        currentMarkupContent = insertChartIfNoPluginPresent(currentMarkupContent, defaultMarkup);
+
+        StringBuilder markupBuilder = new StringBuilder(currentMarkupContent.length() + buildSection.getMarkup().length());
+        markupBuilder.append(currentMarkupContent);
+        markupBuilder.insert(markupBuilder.indexOf("}]") + 2, buildSection.getMarkup());
+        return markupBuilder.toString();
+    }
 
-        return new CodebeamerDto(markupBuilder.toString(), newAttachmentContent, attachmentName);
+    private static WikiMarkupBuilder initWikiMarkupBuilder(String markupTemplate, boolean testReport) {
+        WikiMarkupBuilder wikiMarkupBuilder = new WikiMarkupBuilder();
+        if (markupTemplate != null && !markupTemplate.trim().isEmpty()) {
+            return wikiMarkupBuilder.initWithCustomTemplate(markupTemplate);
+        }
+        return testReport ? wikiMarkupBuilder.initWithTestReportTemplate() : wikiMarkupBuilder.initWithPerformanceTemplate();
     }
 
-    private static String truncateWikiMarkup(String currentMarkupContent, Integer keepBuildNumber) {
+    static String truncateWikiMarkup(String currentMarkupContent, Integer keepBuildNumber) {
+        if (currentMarkupContent == null) {
+            return null;
+        }
+
         int keepBuilds;
         if (keepBuildNumber == null) {
             keepBuilds = DEFAULT_KEEP_BUILD_NUMBER;
@@ -5,41 +5,40 @@
 package com.intland.jenkins.collector;
 
 import com.intland.jenkins.collector.dto.PerformanceDto;
-import hudson.model.AbstractBuild;
+import com.intland.jenkins.util.LatencyHistogram;
+import hudson.model.Run;
+import hudson.plugins.performance.HttpSample;
 import hudson.plugins.performance.PerformanceBuildAction;
 import hudson.plugins.performance.PerformanceReport;
+import hudson.plugins.performance.UriReport;
 
 import java.util.Map;
 
 public class PerformanceDataCollector {
-    public static PerformanceDto collectPerformanceDto(AbstractBuild<?, ?> build) {
+    /**
+     * Every sample of every report goes into one fixed size histogram, so the percentiles are those of all the
+     * samples of the build instead of an average of per-report values, no matter how many samples there are.
+     */
+    public static PerformanceDto collectPerformanceDto(Run<?, ?> build) {
         PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
 
         Map<String, PerformanceReport> reportMap = performanceBuildAction.getPerformanceReportMap().getPerformanceReportMap();
-        long avg = 0l;
-        long median = 0l;
-        long maximum = 0l;
+        LatencyHistogram durations = new LatencyHistogram();
         boolean hasErrors = false;
-        int count = 0;
 
         for (PerformanceReport performanceReport : reportMap.values()) {
-            avg += performanceReport.getAverage();
-            median += performanceReport.getMedian();
-            maximum += performanceReport.getMax();
+            for (UriReport uriReport : performanceReport.getUriReportMap().values()) {
+                for (HttpSample sample : uriReport.getHttpSampleList()) {
+                    durations.record(sample.getDuration());
+                }
+            }
 
             if (performanceReport.countErrors() > 0) {
                 hasErrors = true;
             }
-
-            count++;
-        }
-
-        if (count > 0) {
-            avg = avg / count;
-            median = median / count;
-            maximum = maximum / count;
         }
 
-        return new PerformanceDto(avg, median,  maximum, hasErrors);
+        return new PerformanceDto(Math.round(durations.getMean()), durations.getPercentile(50), durations.getMax(),
+                durations.getPercentile(90), durations.getPercentile(95), durations.getPercentile(99), hasErrors);
     }
 }
@@ -3,10 +3,13 @@
  */
 package com.intland.jenkins.collector;
 
+import com.intland.jenkins.action.PublishTimingAction;
 import com.intland.jenkins.api.CodebeamerApiClient;
 import com.intland.jenkins.collector.dto.ScmDto;
+import com.intland.jenkins.util.ExecutorUtil;
 import com.intland.jenkins.util.PluginUtil;
 import hudson.model.AbstractBuild;
+import hudson.model.Run;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.GitChangeSet;
 import hudson.plugins.git.Revision;
@@ -15,20 +18,53 @@ import hudson.plugins.mercurial.MercurialTagAction;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.SubversionSCM;
 import hudson.scm.SubversionTagAction;
+import jenkins.model.Jenkins;
 import org.tmatesoft.svn.core.SVNException;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ScmDataCollector {
-    private static final Pattern scmTaskIdPattern = Pattern.compile("(#([1-9][0-9]{3,9})((,|\\s+)[1-9][0-9]{3,9})*)(?:\\z|[\\s.,;:)/\\-]+)");
+    private static final Logger LOGGER = Logger.getLogger(ScmDataCollector.class.getName());
+    private static final int DEFAULT_MAX_RENDERED_CHANGES = 100;
+    private static final int MAX_SUMMARIZED_AUTHORS = 3;
+    private static final long AUTHOR_RESOLUTION_TIMEOUT = Long.getLong(ScmDataCollector.class.getName() + ".authorResolutionTimeout", 15000L);
+    // '*' ends a task id as well, ids used to be searched after the asterisks were escaped to " \\*"
+    private static final Pattern scmTaskIdPattern = Pattern.compile("(#([1-9][0-9]{3,9})((,|\\s+)[1-9][0-9]{3,9})*)(?:\\z|[\\s.,;:)/\\-*]+)");
 
-    public static ScmDto collectScmData(AbstractBuild<?, ?> build, CodebeamerApiClient apiClient) throws IOException {
+    public static ScmDto collectScmData(Run<?, ?> build, CodebeamerApiClient apiClient) throws IOException {
+        return collectScmData(build, apiClient, new PublishTimingAction());
+    }
+
+    public static ScmDto collectScmData(Run<?, ?> build, CodebeamerApiClient apiClient, PublishTimingAction timing) throws IOException {
+        return collectScmData(build, apiClient, timing, null);
+    }
+
+    /**
+     * @param timing receives the time spent on the repository and on the author lookups
+     * @param maxRenderedChanges number of changes listed one by one, the rest is summarized in a single line without
+     *                           looking up their authors. 100 when null, every change is listed when not positive
+     */
+    public static ScmDto collectScmData(Run<?, ?> build, CodebeamerApiClient apiClient, PublishTimingAction timing,
+                                        Integer maxRenderedChanges) throws IOException {
+        long start = System.currentTimeMillis();
         String repositoryLine = "Unsupported SCM";
-        String changes = "";
 
         //Subversion in bundled by default, don't need to check plugin
         SubversionTagAction svnScm = build.getAction(SubversionTagAction.class);
@@ -63,49 +99,218 @@ public class ScmDataCollector {
             repositoryLine = String.format("%s, %s", cbRepoUrl, repoRevision);
         }
 
-        for (ChangeLogSet.Entry entry : build.getChangeSet()) {
-            String author = entry.getAuthor().toString();
-            String userId = apiClient.getUserId(author);
-            String commitMessage = getCommitMessage(entry);
-            String commitMessageWithTaskLink = getCodebeamerTaskLink(commitMessage);
-            String formattedUser = userId == null ? String.format("(%s)", author) : String.format("([USER:%s])", userId);
+        timing.recordSince(PublishTimingAction.Phase.SCM_REPOSITORY, start);
 
-            changes += String.format("* %s %s\n", commitMessageWithTaskLink, formattedUser);
+        start = System.currentTimeMillis();
+        int maxChanges = getMaxRenderedChanges(maxRenderedChanges);
+        List<Change> changes = new ArrayList<Change>();
+        Set<String> authors = new LinkedHashSet<String>();
+        int omittedChanges = 0;
+        Set<String> omittedAuthors = new LinkedHashSet<String>();
+        for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : getChangeSets(build)) {
+            for (ChangeLogSet.Entry entry : changeSet) {
+                String author = entry.getAuthor().toString();
+                if (changes.size() < maxChanges) {
+                    changes.add(new Change(author, getCommitMessage(entry)));
+                    authors.add(author);
+                } else {
+                    omittedChanges++;
+                    omittedAuthors.add(author);
+                }
+            }
         }
 
-        return new ScmDto(repositoryLine, changes);
+        Map<String, String> userIds = resolveUserIds(authors, apiClient);
+        timing.recordSince(PublishTimingAction.Phase.SCM_USERS, start);
+
+        String renderedChanges = renderChanges(changes, userIds);
+        if (omittedChanges > 0) {
+            String changesUrl = Jenkins.getInstance().getRootUrl() + build.getUrl() + "changes";
+            renderedChanges += renderOmittedChanges(omittedChanges, omittedAuthors, changesUrl);
+        }
+        return new ScmDto(repositoryLine, renderedChanges);
     }
 
-    //Special treatment for git, entry.getMsg() truncates multiline git comments
-    private static String getCommitMessage(ChangeLogSet.Entry entry) {
-        String resultUnescaped = entry.getMsg();
-        if (entry instanceof GitChangeSet) {
-            resultUnescaped = ((GitChangeSet) entry).getComment();
+    /**
+     * Pipeline builds may check out several repositories, their changes are read through
+     * <code>WorkflowRun.getChangeSets()</code> without depending on the Pipeline plugins.
+     */
+    @SuppressWarnings("unchecked")
+    static List<ChangeLogSet<? extends ChangeLogSet.Entry>> getChangeSets(Run<?, ?> build) {
+        List<ChangeLogSet<? extends ChangeLogSet.Entry>> result = new ArrayList<ChangeLogSet<? extends ChangeLogSet.Entry>>();
+        if (build instanceof AbstractBuild) {
+            result.add(((AbstractBuild<?, ?>) build).getChangeSet());
+            return result;
         }
 
-        String result = resultUnescaped.trim()
-                .replaceAll("\\n", " ")
-                .replaceAll("\\t", " ")
-                .replaceAll("\\*", " \\\\\\\\*");
+        try {
+            Method getChangeSets = build.getClass().getMethod("getChangeSets");
+            Object changeSets = getChangeSets.invoke(build);
+            if (changeSets instanceof Collection) {
+                result.addAll((Collection<ChangeLogSet<? extends ChangeLogSet.Entry>>) changeSets);
+            }
+        } catch (NoSuchMethodException e) {
+            LOGGER.log(Level.FINE, "Changes of " + build.getClass().getName() + " are not available", e);
+        } catch (IllegalAccessException e) {
+            LOGGER.log(Level.FINE, "Changes of " + build.getClass().getName() + " are not available", e);
+        } catch (InvocationTargetException e) {
+            LOGGER.log(Level.WARNING, "Could not read the changes of " + build, e.getCause());
+        }
         return result;
     }
 
-    private static String getCodebeamerTaskLink(String gitCommitMessage) {
-        Matcher commitMessageMatcher = scmTaskIdPattern.matcher(gitCommitMessage);
-        String result = gitCommitMessage;
+    private static int getMaxRenderedChanges(Integer maxRenderedChanges) {
+        if (maxRenderedChanges == null) {
+            return DEFAULT_MAX_RENDERED_CHANGES;
+        }
+        return maxRenderedChanges.intValue() > 0 ? maxRenderedChanges.intValue() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Renders one wiki list item per change into a single buffer, in time linear in the total length of the
+     * commit messages.
+     */
+    static String renderChanges(List<Change> changes, Map<String, String> userIds) {
+        int length = 0;
+        for (Change change : changes) {
+            length += change.message.length() + change.author.length() + 32;
+        }
+
+        StringBuilder result = new StringBuilder(length);
+        for (Change change : changes) {
+            String userId = userIds.get(change.author);
+            result.append("* ");
+            appendCommitMessage(result, change.message);
+            result.append(' ');
+            if (userId == null) {
+                result.append('(').append(change.author).append(')');
+            } else {
+                result.append("([USER:").append(userId).append("])");
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return e.g. <code>* [and 120 more commits|http://jenkins/job/x/12/changes] by alice, bob, carol and 4 others</code>
+     */
+    static String renderOmittedChanges(int count, Collection<String> authors, String changesUrl) {
+        StringBuilder result = new StringBuilder("* [and ").append(count).append(count == 1 ? " more commit|" : " more commits|")
+                .append(changesUrl).append(']');
+        int listed = 0;
+        for (String author : authors) {
+            if (listed == MAX_SUMMARIZED_AUTHORS) {
+                break;
+            }
+            result.append(listed == 0 ? " by " : ", ").append(author);
+            listed++;
+        }
+        int others = authors.size() - listed;
+        if (others > 0) {
+            result.append(" and ").append(others).append(others == 1 ? " other" : " others");
+        }
+        return result.append('\n').toString();
+    }
+
+    /**
+     * Resolves each distinct author once, concurrently and within an overall deadline. Authors that could not be
+     * resolved in time are missing from the result and rendered in the plain (author) form.
+     */
+    private static Map<String, String> resolveUserIds(Collection<String> authors, final CodebeamerApiClient apiClient) {
+        Map<String, String> result = new HashMap<String, String>();
+        if (authors.isEmpty()) {
+            return result;
+        }
+
+        List<String> authorList = new ArrayList<String>(authors);
+        List<Callable<String>> lookups = new ArrayList<Callable<String>>(authorList.size());
+        for (final String author : authorList) {
+            lookups.add(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return apiClient.getUserId(author);
+                }
+            });
+        }
 
-        List<String> issues = new ArrayList<String>();
-        while (commitMessageMatcher.find()) {
-            issues.add(commitMessageMatcher.group(1));
+        List<Future<String>> futures;
+        try {
+            futures = ExecutorUtil.getLookupExecutor().invokeAll(lookups, AUTHOR_RESOLUTION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result;
         }
 
-        if (issues.size() > 0) {
-            for (String issue : issues) {
-                String link = String.format("[%s|ISSUE:%s]", issue, issue.replace("#",""));
-                result = result.replace(issue, link);
+        for (int i = 0; i < futures.size(); i++) {
+            Future<String> future = futures.get(i);
+            if (future.isCancelled()) {
+                continue;
+            }
+            try {
+                result.put(authorList.get(i), future.get());
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINE, "Could not resolve codeBeamer user of " + authorList.get(i), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
 
         return result;
     }
+
+    //Special treatment for git, entry.getMsg() truncates multiline git comments
+    static String getCommitMessage(ChangeLogSet.Entry entry) {
+        if (entry instanceof GitChangeSet) {
+            return ((GitChangeSet) entry).getComment();
+        }
+        return entry.getMsg();
+    }
+
+    /**
+     * Appends the trimmed message in wiki markup in one pass: line breaks and tabs become spaces, asterisks are
+     * escaped and every task reference (#1234 or #1234, 5678) is turned into a link where it was found.
+     */
+    static void appendCommitMessage(StringBuilder result, String message) {
+        String trimmed = message.trim();
+        Matcher taskIdMatcher = scmTaskIdPattern.matcher(trimmed);
+        int position = 0;
+        while (taskIdMatcher.find()) {
+            int issueStart = taskIdMatcher.start(1);
+            int issueEnd = taskIdMatcher.end(1);
+            appendEscaped(result, trimmed, position, issueStart);
+
+            result.append('[');
+            appendEscaped(result, trimmed, issueStart, issueEnd);
+            result.append("|ISSUE:");
+            appendEscaped(result, trimmed, issueStart + 1, issueEnd);
+            result.append(']');
+            position = issueEnd;
+        }
+        appendEscaped(result, trimmed, position, trimmed.length());
+    }
+
+    private static void appendEscaped(StringBuilder result, String text, int start, int end) {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\t' || c == '*') {
+                result.append(text, runStart, i);
+                result.append(c == '*' ? " \\\\*" : " ");
+                runStart = i + 1;
+            }
+        }
+        result.append(text, runStart, end);
+    }
+
+    static class Change {
+        private final String author;
+        private final String message;
+
+        Change(String author, String message) {
+            this.author = author;
+            this.message = message;
+        }
+    }
 }
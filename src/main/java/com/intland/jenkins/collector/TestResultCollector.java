@@ -4,29 +4,45 @@
 
 package com.intland.jenkins.collector;
 
+import com.intland.jenkins.action.TestSummaryAction;
+import com.intland.jenkins.util.LongHashSet;
+import com.intland.jenkins.util.TestDiff;
+import com.intland.jenkins.util.TestHistory;
 import com.intland.jenkins.util.TimeUtil;
+import com.intland.jenkins.collector.dto.BuildDto;
 import com.intland.jenkins.collector.dto.TestResultDto;
-import hudson.model.AbstractBuild;
-import hudson.model.BuildListener;
 import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.CaseResult;
 import hudson.tasks.test.AbstractTestResultAction;
 import hudson.tasks.test.AggregatedTestResultAction;
 import hudson.tasks.test.TestResult;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class TestResultCollector {
-    public static TestResultDto collectTestResultData(AbstractBuild<?, ?> build, BuildListener listener) {
+    private static final Logger LOGGER = Logger.getLogger(TestResultCollector.class.getName());
+    private static final String TEST_HISTORY_FILE = "codebeamer-test-history.bin";
+
+    public static TestResultDto collectTestResultData(Run<?, ?> build, BuildDto buildDto, TaskListener listener) {
         String formattedTestDuration = "";
         int totalCount = 0;
         int failCount = 0;
-        int lastFailCount = 0;
+        int skipCount = 0;
         String failedDifference = "";
         long testDuration = 0l;
+        List<TestResult> testResults = new ArrayList<TestResult>();
+        TestDiff testDiff = new TestDiff(null, 0);
+        TestHistory testHistory = null;
 
         AbstractTestResultAction action = build.getAction(AbstractTestResultAction.class);
-        Object lastTestResult = getPreviousTestResult(build);
-        if (action != null && action.getResult() != null) {
+        boolean testResultPresent = action != null && action.getResult() != null;
+        if (testResultPresent) {
             if (action.getResult() instanceof List) { // aggregateResult
                 List<AggregatedTestResultAction.ChildReport> childReports = (List<AggregatedTestResultAction.ChildReport>) action.getResult();
                 for (AggregatedTestResultAction.ChildReport childReport : childReports) {
@@ -34,14 +50,8 @@ public class TestResultCollector {
                     testDuration += new Float(testResult.getDuration() * 1000).longValue();
                     totalCount += testResult.getTotalCount();
                     failCount += testResult.getFailCount();
-                }
-
-                if (lastTestResult != null) {
-                    childReports = (List<AggregatedTestResultAction.ChildReport>) lastTestResult;
-                    for (AggregatedTestResultAction.ChildReport childReport : childReports) {
-                        TestResult testResult = (TestResult) childReport.result;
-                        lastFailCount += testResult.getFailCount();
-                    }
+                    skipCount += testResult.getSkipCount();
+                    testResults.add(testResult);
                 }
 
                 formattedTestDuration = TimeUtil.formatMillisIntoMinutesAndSeconds(testDuration);
@@ -51,42 +61,135 @@ public class TestResultCollector {
                 formattedTestDuration = TimeUtil.formatMillisIntoMinutesAndSeconds(testDuration);
                 totalCount = testResult.getTotalCount();
                 failCount = testResult.getFailCount();
-
-                if (lastTestResult != null) {
-                    lastFailCount = ((TestResult) lastTestResult).getFailCount();
-                }
+                skipCount = testResult.getSkipCount();
+                testResults.add(testResult);
             } else {
                 listener.getLogger().println("This build does not have a supported test run type");
             }
 
-            failedDifference = failDifference(failCount, lastFailCount);
+            Run<?, ?> previousBuild = getPreviousTestedBuild(build);
+            failedDifference = failDifference(failCount, getFailCount(previousBuild));
+            testDiff = new TestDiff(getFailedTestHashes(previousBuild), failCount);
+            testHistory = analyzeTests(build, testResults, testDiff);
         } else {
             listener.getLogger().println("This build does not have a test run");
         }
 
-        return new TestResultDto(formattedTestDuration, totalCount, failCount, failedDifference, testDuration);
+        TestResultDto testResultDto = new TestResultDto(formattedTestDuration, totalCount, failCount, skipCount, failedDifference, testDuration,
+                testDiff.getNewFailureCount(), testDiff.getFixedCount(), testDiff.getNewFailures(), testDiff.getFixedTests());
+        if (testHistory != null) {
+            testResultDto.setFlakyTests(testHistory.getFlakyCount(), testHistory.getFlakinessRate(), testHistory.getFlakyTests());
+        }
+        long[] failedTestHashes = testResultPresent ? testDiff.getFailureHashes() : null;
+        build.replaceAction(new TestSummaryAction(testResultPresent, testResultDto, buildDto.getBuildDuration(), failedTestHashes));
+        return testResultDto;
     }
 
-    private static Object getPreviousTestResult(AbstractBuild build) {
-        AbstractTestResultAction result = null;
+    /**
+     * Compares the tests to the previous build and adds the build to the test history of the job, in one pass over
+     * the tests hashing every name once.
+     *
+     * @return the updated history, null if it could not be read or written
+     */
+    private static TestHistory analyzeTests(Run<?, ?> build, List<TestResult> testResults, TestDiff testDiff) {
+        File historyFile = new File(build.getParent().getRootDir(), TEST_HISTORY_FILE);
+        synchronized (TestHistory.getLock(historyFile)) {
+            TestHistory testHistory;
+            try {
+                testHistory = TestHistory.load(historyFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Starting a new test history, could not read " + historyFile, e);
+                testHistory = new TestHistory(0);
+            }
 
-        int counter = build.getNumber();
-        while (result == null && counter > 0) {
-            counter--;
-            Run candidateBuild = build.getParent().getBuild(String.valueOf(counter));
+            testHistory.startBuild(build.getNumber());
+            for (TestResult testResult : testResults) {
+                for (TestResult failedTest : testResult.getFailedTests()) {
+                    String testName = getTestName(failedTest);
+                    long hash = LongHashSet.hash(testName);
+                    testDiff.addFailure(testName, hash);
+                    testHistory.record(testName, hash, true);
+                }
+                for (TestResult passedTest : testResult.getPassedTests()) {
+                    String testName = getTestName(passedTest);
+                    long hash = LongHashSet.hash(testName);
+                    testDiff.addPass(testName, hash);
+                    testHistory.record(testName, hash, false);
+                }
+            }
 
-            if (candidateBuild == null) {
-                continue;
+            try {
+                testHistory.save(historyFile);
+                return testHistory;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save the test history " + historyFile, e);
+                return null;
             }
+        }
+    }
+
+    private static String getTestName(TestResult test) {
+        return test instanceof CaseResult ? ((CaseResult) test).getFullName() : test.getDisplayName();
+    }
 
-            AbstractTestResultAction candidateTestResultAction = candidateBuild.getAction(AbstractTestResultAction.class);
-            if (candidateTestResultAction != null) {
-                return candidateTestResultAction.getResult();
+    /**
+     * Follows the previous build links to the first build with test results, as recorded by this plugin or, for
+     * builds published before the summary was recorded, by its test result action.
+     *
+     * @return null if there is no such build
+     */
+    private static Run<?, ?> getPreviousTestedBuild(Run<?, ?> build) {
+        Run<?, ?> candidateBuild = build.getPreviousBuild();
+        while (candidateBuild != null) {
+            TestSummaryAction summaryAction = candidateBuild.getAction(TestSummaryAction.class);
+            if (summaryAction != null) {
+                if (summaryAction.isTestResultPresent()) {
+                    return candidateBuild;
+                }
+            } else if (candidateBuild.getAction(AbstractTestResultAction.class) != null) {
+                return candidateBuild;
             }
+            candidateBuild = candidateBuild.getPreviousBuild();
         }
         return null;
     }
 
+    private static int getFailCount(Run<?, ?> previousBuild) {
+        if (previousBuild == null) {
+            return 0;
+        }
+        TestSummaryAction summaryAction = previousBuild.getAction(TestSummaryAction.class);
+        if (summaryAction != null) {
+            return summaryAction.getFailCount();
+        }
+        return previousBuild.getAction(AbstractTestResultAction.class).getFailCount();
+    }
+
+    /**
+     * @return null if the failures of the previous build are unknown
+     */
+    private static long[] getFailedTestHashes(Run<?, ?> previousBuild) {
+        if (previousBuild == null) {
+            return null;
+        }
+        TestSummaryAction summaryAction = previousBuild.getAction(TestSummaryAction.class);
+        if (summaryAction != null && summaryAction.getFailedTestHashes() != null) {
+            return summaryAction.getFailedTestHashes();
+        }
+
+        // published before the failures were recorded or with too many of them, loads the test results of that build
+        AbstractTestResultAction<?> testResultAction = previousBuild.getAction(AbstractTestResultAction.class);
+        if (testResultAction == null) {
+            return null;
+        }
+        List<? extends TestResult> failedTests = testResultAction.getFailedTests();
+        LongHashSet failedTestHashes = new LongHashSet(failedTests.size());
+        for (TestResult failedTest : failedTests) {
+            failedTestHashes.add(LongHashSet.hash(getTestName(failedTest)));
+        }
+        return failedTestHashes.toArray();
+    }
+
     private static String failDifference(int failCount1, int failCount2) {
         String sign;
         if (failCount1 > failCount2) {
@@ -8,12 +8,19 @@ public class PerformanceDto {
     long medianResponseTime;
     long averageResponseTime;
     long maximumResponseTime;
+    long p90ResponseTime;
+    long p95ResponseTime;
+    long p99ResponseTime;
     boolean failed;
 
-    public PerformanceDto(long averageResponseTime, long medianResponseTime,  long maximumResponseTime, boolean failed) {
+    public PerformanceDto(long averageResponseTime, long medianResponseTime,  long maximumResponseTime,
+                          long p90ResponseTime, long p95ResponseTime, long p99ResponseTime, boolean failed) {
         this.averageResponseTime = averageResponseTime;
         this.medianResponseTime = medianResponseTime;
         this.maximumResponseTime = maximumResponseTime;
+        this.p90ResponseTime = p90ResponseTime;
+        this.p95ResponseTime = p95ResponseTime;
+        this.p99ResponseTime = p99ResponseTime;
         this.failed = failed;
     }
 
@@ -29,6 +36,18 @@ public class PerformanceDto {
         return maximumResponseTime;
     }
 
+    public long getP90ResponseTime() {
+        return p90ResponseTime;
+    }
+
+    public long getP95ResponseTime() {
+        return p95ResponseTime;
+    }
+
+    public long getP99ResponseTime() {
+        return p99ResponseTime;
+    }
+
     public boolean isFailed() {
         return failed;
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.collector.dto;
+
+/**
+ * Snapshot of everything collected from a build, the wiki section and the trend row are rendered from it.
+ * Exactly one of the test result and the performance result is present.
+ */
+public class PublishDataDto {
+    private final BuildDto buildDto;
+    private final ScmDto scmDto;
+    private final TestResultDto testResultDto;
+    private final PerformanceDto performanceDto;
+    private final long currentTime;
+
+    public PublishDataDto(BuildDto buildDto, ScmDto scmDto, TestResultDto testResultDto, PerformanceDto performanceDto, long currentTime) {
+        this.buildDto = buildDto;
+        this.scmDto = scmDto;
+        this.testResultDto = testResultDto;
+        this.performanceDto = performanceDto;
+        this.currentTime = currentTime;
+    }
+
+    public BuildDto getBuildDto() {
+        return buildDto;
+    }
+
+    public ScmDto getScmDto() {
+        return scmDto;
+    }
+
+    public TestResultDto getTestResultDto() {
+        return testResultDto;
+    }
+
+    public PerformanceDto getPerformanceDto() {
+        return performanceDto;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    public boolean isPerformanceResult() {
+        return performanceDto != null;
+    }
+}
@@ -4,19 +4,47 @@
 
 package com.intland.jenkins.collector.dto;
 
+import com.intland.jenkins.util.TestHistory;
+
+import java.util.Collections;
+import java.util.List;
+
 public class TestResultDto {
     private String formattedTestDuration;
     private int totalCount;
     private int failCount;
+    private int skipCount;
     private String failedDifference;
     private long testDuration;
+    private int newFailureCount;
+    private int fixedCount;
+    private List<String> newFailures;
+    private List<String> fixedTests;
+    private int flakyCount;
+    private double flakinessRate;
+    private List<TestHistory.FlakyTest> flakyTests = Collections.emptyList();
+
+    public TestResultDto(String formattedTestDuration, int totalCount, int failCount, int skipCount, String failedDifference, long testDuration) {
+        this(formattedTestDuration, totalCount, failCount, skipCount, failedDifference, testDuration,
+                0, 0, Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
 
-    public TestResultDto(String formattedTestDuration, int totalCount, int failCount, String failedDifference, long testDuration) {
+    /**
+     * @param newFailures names of the first tests failing since this build, newFailureCount in total
+     * @param fixedTests names of the first tests passing again in this build, fixedCount in total
+     */
+    public TestResultDto(String formattedTestDuration, int totalCount, int failCount, int skipCount, String failedDifference, long testDuration,
+                         int newFailureCount, int fixedCount, List<String> newFailures, List<String> fixedTests) {
         this.formattedTestDuration = formattedTestDuration;
         this.totalCount = totalCount;
         this.failCount = failCount;
+        this.skipCount = skipCount;
         this.failedDifference = failedDifference;
         this.testDuration = testDuration;
+        this.newFailureCount = newFailureCount;
+        this.fixedCount = fixedCount;
+        this.newFailures = newFailures;
+        this.fixedTests = fixedTests;
     }
 
     public String getFormattedTestDuration() {
@@ -31,6 +59,10 @@ public class TestResultDto {
         return failCount;
     }
 
+    public int getSkipCount() {
+        return skipCount;
+    }
+
     public String getFailedDifference() {
         return failedDifference;
     }
@@ -38,4 +70,42 @@ public class TestResultDto {
     public long getTestDuration() {
         return testDuration;
     }
+
+    public int getNewFailureCount() {
+        return newFailureCount;
+    }
+
+    public int getFixedCount() {
+        return fixedCount;
+    }
+
+    public List<String> getNewFailures() {
+        return newFailures;
+    }
+
+    public List<String> getFixedTests() {
+        return fixedTests;
+    }
+
+    /**
+     * @param flakinessRate share of the flaky tests in the build in percent
+     * @param flakyTests the flakiest tests
+     */
+    public void setFlakyTests(int flakyCount, double flakinessRate, List<TestHistory.FlakyTest> flakyTests) {
+        this.flakyCount = flakyCount;
+        this.flakinessRate = flakinessRate;
+        this.flakyTests = flakyTests;
+    }
+
+    public int getFlakyCount() {
+        return flakyCount;
+    }
+
+    public double getFlakinessRate() {
+        return flakinessRate;
+    }
+
+    public List<TestHistory.FlakyTest> getFlakyTests() {
+        return flakyTests;
+    }
 }
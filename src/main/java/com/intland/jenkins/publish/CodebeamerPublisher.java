@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.publish;
+
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.api.CodebeamerApiClient;
+import com.intland.jenkins.collector.CodebeamerCollector;
+import com.intland.jenkins.collector.dto.BuildDto;
+import com.intland.jenkins.collector.dto.CodebeamerDto;
+import com.intland.jenkins.util.TrendCsvCompactor;
+import com.intland.jenkins.util.TrendStore;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes collected build data to codeBeamer, either on the build's thread or on the controller-side publishing pool.
+ * Builds targeting the same wiki page are coalesced by the page's {@link WikiPageQueue}.
+ */
+public class CodebeamerPublisher {
+    private static final Logger LOGGER = Logger.getLogger(CodebeamerPublisher.class.getName());
+
+    private static final Comparator<WikiPageQueue.PendingJob> BUILD_ORDER = new Comparator<WikiPageQueue.PendingJob>() {
+        @Override
+        public int compare(WikiPageQueue.PendingJob o1, WikiPageQueue.PendingJob o2) {
+            BuildDto build1 = o1.job.getPublishDataDto().getBuildDto();
+            BuildDto build2 = o2.job.getPublishDataDto().getBuildDto();
+            int result = compareBuildNumbers(build1.getBuildNumber(), build2.getBuildNumber());
+            return result != 0 ? result : compareLongs(o1.job.getPublishDataDto().getCurrentTime(), o2.job.getPublishDataDto().getCurrentTime());
+        }
+    };
+
+    /**
+     * Hands the job to the publishing pool.
+     *
+     * @return false if the pool is saturated, the caller has to publish synchronously then
+     */
+    public static boolean publishAsync(PublishJob job) {
+        WikiPageQueue queue = WikiPageQueue.get(job.getUrl(), job.getWikiId());
+        return queue.enqueueAsync(job, new PrintStream(new NullOutputStream())) != null;
+    }
+
+    /**
+     * Publishes the job on the publishing pool and waits for the result. The job may be published together with
+     * other builds pending for the same page.
+     */
+    public static void publish(PublishJob job, PrintStream logger) throws IOException {
+        WikiPageQueue queue = WikiPageQueue.get(job.getUrl(), job.getWikiId());
+        try {
+            queue.publishAndWait(job, logger);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for codeBeamer publishing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Applies the build sections in build order with a single wiki GET and PUT, and a single attachment cycle per
+     * trend attachment. Completes the result of every job, never throws.
+     */
+    static void publishBatch(List<WikiPageQueue.PendingJob> batch) {
+        List<WikiPageQueue.PendingJob> jobs = new ArrayList<WikiPageQueue.PendingJob>(batch);
+        Collections.sort(jobs, BUILD_ORDER);
+
+        List<WikiPageQueue.PendingJob> rendered = new ArrayList<WikiPageQueue.PendingJob>();
+        List<CodebeamerDto> buildSections = new ArrayList<CodebeamerDto>();
+        for (WikiPageQueue.PendingJob pendingJob : jobs) {
+            pendingJob.job.getStatusAction().publishing();
+            long start = System.currentTimeMillis();
+            try {
+                buildSections.add(CodebeamerCollector.renderBuildSection(pendingJob.job.getPublishDataDto(), pendingJob.job.getMarkupTemplate()));
+                pendingJob.job.getTimingAction().recordSince(PublishTimingAction.Phase.RENDER, start);
+                rendered.add(pendingJob);
+            } catch (RuntimeException e) {
+                fail(pendingJob, e);
+            }
+        }
+        if (rendered.isEmpty()) {
+            return;
+        }
+
+        // the jobs of a batch share credentials and attachment settings
+        PublishJob lastJob = rendered.get(rendered.size() - 1).job;
+        CodebeamerApiClient apiClient = lastJob.getApiClient();
+        try {
+            if (rendered.size() > 1) {
+                log(rendered, String.format("Publishing %d builds to the wiki page together", rendered.size()));
+            }
+
+            // shared phases count fully for every build of the batch, each of them waited for all of it
+            long start = System.currentTimeMillis();
+            String markup = apiClient.getWikiMarkup();
+            record(rendered, PublishTimingAction.Phase.WIKI_FETCH, start);
+
+            start = System.currentTimeMillis();
+            Map<String, StringBuilder> attachments = new LinkedHashMap<String, StringBuilder>();
+            for (int i = 0; i < rendered.size(); i++) {
+                CodebeamerDto buildSection = buildSections.get(i);
+                markup = CodebeamerCollector.mergeBuildSection(markup, buildSection, rendered.get(i).job.getKeepBuildNumber());
+
+                // trend rows are kept newest first
+                StringBuilder rows = attachments.get(buildSection.getAttachmentName());
+                if (rows == null) {
+                    rows = new StringBuilder();
+                    attachments.put(buildSection.getAttachmentName(), rows);
+                }
+                rows.insert(0, buildSection.getAttachmentContent());
+            }
+            record(rendered, PublishTimingAction.Phase.RENDER, start);
+
+            log(rendered, "Starting wiki update");
+            start = System.currentTimeMillis();
+            apiClient.updateWikiMarkup(lastJob.getUrl(), lastJob.getWikiId(), markup);
+            record(rendered, PublishTimingAction.Phase.WIKI_UPDATE, start);
+            log(rendered, "Wiki update finished");
+
+            start = System.currentTimeMillis();
+            Integer segmentRows = lastJob.getTrendSegmentRows();
+            for (Map.Entry<String, StringBuilder> attachment : attachments.entrySet()) {
+                if (segmentRows != null && segmentRows.intValue() > 0) {
+                    apiClient.appendToSegmentedAttachment(attachment.getKey(), attachment.getValue().toString(), segmentRows.intValue());
+                } else if (lastJob.getTrendStoreDirectory() != null) {
+                    publishFromTrendStore(lastJob, attachment.getKey(), rendered, buildSections);
+                } else {
+                    apiClient.createOrUpdateAttachment(attachment.getKey(), attachment.getValue().toString(), lastJob.getCompactor());
+                }
+            }
+            record(rendered, PublishTimingAction.Phase.ATTACHMENT, start);
+            log(rendered, "Attachment uploaded");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Publishing to codeBeamer failed", e);
+            for (WikiPageQueue.PendingJob pendingJob : rendered) {
+                pendingJob.logger.println(pendingJob.job.getTimingAction().getSummary());
+                fail(pendingJob, e);
+            }
+            return;
+        }
+
+        for (WikiPageQueue.PendingJob pendingJob : rendered) {
+            pendingJob.logger.println(pendingJob.job.getTimingAction().getSummary());
+            pendingJob.job.getStatusAction().published();
+            pendingJob.result.set(null);
+        }
+    }
+
+    /**
+     * Appends the rows of the builds to the local trend store of the attachment and uploads the csv generated from
+     * it. The attachment is only downloaded when the store is empty, e.g. the first time or after the store was
+     * deleted or found corrupt, to fill the store with the rows published before.
+     */
+    private static void publishFromTrendStore(PublishJob lastJob, String attachmentName, List<WikiPageQueue.PendingJob> rendered,
+                                              List<CodebeamerDto> buildSections) throws IOException {
+        CodebeamerApiClient apiClient = lastJob.getApiClient();
+        File storeFile = TrendStore.getFile(lastJob.getTrendStoreDirectory(), lastJob.getUrl(), lastJob.getWikiId(), attachmentName);
+        TrendStore store = TrendStore.openOrReplace(storeFile);
+        try {
+            if (store.isEmpty()) {
+                String oldContent = apiClient.downloadAttachment(attachmentName);
+                if (oldContent != null) {
+                    int skipped = store.importCsv(new StringReader(oldContent));
+                    log(rendered, String.format("Trend store %s created from %d rows of %s", storeFile, store.size(), attachmentName));
+                    if (skipped > 0) {
+                        LOGGER.warning(String.format("%d lines of %s are not trend rows, they are not kept in %s", skipped, attachmentName, storeFile));
+                    }
+                }
+            }
+
+            // the batch is in build order, the store oldest first
+            for (int i = 0; i < rendered.size(); i++) {
+                CodebeamerDto buildSection = buildSections.get(i);
+                if (attachmentName.equals(buildSection.getAttachmentName())) {
+                    BuildDto buildDto = rendered.get(i).job.getPublishDataDto().getBuildDto();
+                    store.append(buildSection.getAttachmentContent(), parseBuildNumber(buildDto.getBuildNumber()));
+                }
+            }
+
+            StringWriter csv = new StringWriter();
+            store.writeCsv(csv);
+            String content = csv.toString();
+            TrendCsvCompactor compactor = lastJob.getCompactor();
+            if (compactor != null) {
+                StringWriter compacted = new StringWriter(content.length());
+                compactor.compact(new StringReader(content), compacted);
+                content = compacted.toString();
+            }
+            apiClient.replaceAttachment(attachmentName, content);
+        } finally {
+            store.close();
+        }
+    }
+
+    private static int parseBuildNumber(String buildNumber) {
+        try {
+            return Integer.parseInt(buildNumber);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void fail(WikiPageQueue.PendingJob pendingJob, Exception e) {
+        pendingJob.job.getStatusAction().failed(e instanceof IOException ? e.getMessage() : e.toString());
+        pendingJob.result.setException(e);
+    }
+
+    private static void record(List<WikiPageQueue.PendingJob> jobs, PublishTimingAction.Phase phase, long startMillis) {
+        long duration = System.currentTimeMillis() - startMillis;
+        for (WikiPageQueue.PendingJob pendingJob : jobs) {
+            pendingJob.job.getTimingAction().record(phase, duration);
+        }
+    }
+
+    private static void log(List<WikiPageQueue.PendingJob> jobs, String message) {
+        for (WikiPageQueue.PendingJob pendingJob : jobs) {
+            pendingJob.logger.println(message);
+        }
+    }
+
+    private static int compareBuildNumbers(String buildNumber1, String buildNumber2) {
+        try {
+            return compareLongs(Long.parseLong(buildNumber1), Long.parseLong(buildNumber2));
+        } catch (NumberFormatException e) {
+            return buildNumber1.compareTo(buildNumber2);
+        }
+    }
+
+    private static int compareLongs(long value1, long value2) {
+        return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+    }
+}
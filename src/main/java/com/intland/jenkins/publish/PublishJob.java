@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.publish;
+
+import com.intland.jenkins.action.PublishStatusAction;
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.api.CodebeamerApiClient;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import com.intland.jenkins.util.TrendCsvCompactor;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Immutable unit of work handed from the build to the publishing pool: the collected build data and the page
+ * settings it is published with.
+ */
+public class PublishJob {
+    private final CodebeamerApiClient apiClient;
+    private final String url;
+    private final String wikiId;
+    private final Integer keepBuildNumber;
+    private final String markupTemplate;
+    private final TrendCsvCompactor compactor;
+    private final Integer trendSegmentRows;
+    private final File trendStoreDirectory;
+    private final PublishDataDto publishDataDto;
+    private final PublishStatusAction statusAction;
+    private final PublishTimingAction timingAction;
+
+    public PublishJob(CodebeamerApiClient apiClient, String url, String wikiId, Integer keepBuildNumber, String markupTemplate,
+                      TrendCsvCompactor compactor, Integer trendSegmentRows, File trendStoreDirectory, PublishDataDto publishDataDto,
+                      PublishStatusAction statusAction, PublishTimingAction timingAction) {
+        this.apiClient = apiClient;
+        this.url = url;
+        this.wikiId = wikiId;
+        this.keepBuildNumber = keepBuildNumber;
+        this.markupTemplate = markupTemplate;
+        this.compactor = compactor;
+        this.trendSegmentRows = trendSegmentRows;
+        this.trendStoreDirectory = trendStoreDirectory;
+        this.publishDataDto = publishDataDto;
+        this.statusAction = statusAction;
+        this.timingAction = timingAction;
+    }
+
+    /**
+     * @return true if the jobs can be published in one batch, with the credentials and attachment settings of either
+     */
+    public boolean canShareBatchWith(PublishJob other) {
+        return apiClient.hasSameCredentials(other.apiClient)
+                && Objects.equals(compactor, other.compactor)
+                && Objects.equals(trendSegmentRows, other.trendSegmentRows)
+                && Objects.equals(trendStoreDirectory, other.trendStoreDirectory);
+    }
+
+    public CodebeamerApiClient getApiClient() {
+        return apiClient;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getWikiId() {
+        return wikiId;
+    }
+
+    public Integer getKeepBuildNumber() {
+        return keepBuildNumber;
+    }
+
+    public String getMarkupTemplate() {
+        return markupTemplate;
+    }
+
+    public TrendCsvCompactor getCompactor() {
+        return compactor;
+    }
+
+    /**
+     * @return rows per trend attachment segment, null or not positive when the trend is kept in a single attachment
+     */
+    public Integer getTrendSegmentRows() {
+        return trendSegmentRows;
+    }
+
+    /**
+     * @return the directory of the local trend stores, null when the trend csv is downloaded and updated instead
+     */
+    public File getTrendStoreDirectory() {
+        return trendStoreDirectory;
+    }
+
+    public PublishDataDto getPublishDataDto() {
+        return publishDataDto;
+    }
+
+    public PublishStatusAction getStatusAction() {
+        return statusAction;
+    }
+
+    public PublishTimingAction getTimingAction() {
+        return timingAction;
+    }
+}
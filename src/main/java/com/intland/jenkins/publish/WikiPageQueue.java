@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.publish;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.intland.jenkins.util.ExecutorUtil;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serialization point of a single wiki page. Builds publishing to the same page are queued here and published in
+ * batches on the publishing pool, one batch of the page at a time, so concurrent builds neither lose each other's
+ * updates nor multiply the load on codeBeamer. A batch only holds jobs with the same credentials and attachment
+ * settings, see {@link PublishJob#canShareBatchWith}.
+ *
+ * Build threads never drain the queue. Only when the pool can't take the work does a waiting build publish the
+ * batch holding its own job, any other work is handed back to the pool.
+ */
+public class WikiPageQueue {
+    private static final Map<String, WikiPageQueue> QUEUES = new HashMap<String, WikiPageQueue>();
+    private static final long WAIT_SLICE_MILLIS = 1000;
+
+    private static final BatchPublisher CODEBEAMER_PUBLISHER = new BatchPublisher() {
+        @Override
+        public void publish(List<PendingJob> batch) {
+            CodebeamerPublisher.publishBatch(batch);
+        }
+    };
+
+    private final Executor executor;
+    private final BatchPublisher publisher;
+    private final List<PendingJob> pending = new ArrayList<PendingJob>();
+    private boolean draining;
+
+    /**
+     * @param executor runs the drains, the publishing pool when null
+     */
+    WikiPageQueue(Executor executor, BatchPublisher publisher) {
+        this.executor = executor;
+        this.publisher = publisher;
+    }
+
+    public static synchronized WikiPageQueue get(String url, String wikiId) {
+        String key = url + "/wiki/" + wikiId;
+        WikiPageQueue queue = QUEUES.get(key);
+        if (queue == null) {
+            queue = new WikiPageQueue(null, CODEBEAMER_PUBLISHER);
+            QUEUES.put(key, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Queues the job to be published on the pool.
+     *
+     * @return completes when the job has been published, null if the pool is saturated and the job was not queued
+     */
+    public Future<Void> enqueueAsync(PublishJob job, PrintStream logger) {
+        PendingJob pendingJob = add(job, logger);
+        if (!scheduleDrain()) {
+            synchronized (this) {
+                if (pending.remove(pendingJob)) {
+                    return null;
+                }
+            }
+        }
+        return pendingJob.result;
+    }
+
+    /**
+     * Queues the job and waits until it has been published.
+     *
+     * @throws ExecutionException with the exception publishing failed with
+     */
+    public void publishAndWait(PublishJob job, PrintStream logger) throws InterruptedException, ExecutionException {
+        PendingJob pendingJob = add(job, logger);
+        while (true) {
+            if (!scheduleDrain()) {
+                publishOwnBatch(pendingJob);
+            }
+            try {
+                pendingJob.result.get(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // a drain of the pool may have been rejected in the meantime, check again
+            }
+        }
+    }
+
+    private synchronized PendingJob add(PublishJob job, PrintStream logger) {
+        PendingJob pendingJob = new PendingJob(job, logger);
+        pending.add(pendingJob);
+        job.getStatusAction().queued();
+        return pendingJob;
+    }
+
+    /**
+     * @return false if jobs are pending, no drain is running and the pool rejected a new one
+     */
+    private boolean scheduleDrain() {
+        synchronized (this) {
+            if (draining || pending.isEmpty()) {
+                return true;
+            }
+            draining = true;
+        }
+
+        try {
+            getExecutor().execute(new Drain());
+            return true;
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                draining = false;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the batch holding the job on the calling thread, unless a drain is running or the job has already
+     * been taken. Jobs left over are handed to the pool, their builds publish them if it is still full.
+     */
+    private void publishOwnBatch(PendingJob pendingJob) {
+        List<PendingJob> batch;
+        synchronized (this) {
+            if (draining || !pending.contains(pendingJob)) {
+                return;
+            }
+            draining = true;
+            batch = takeBatch(pendingJob);
+        }
+
+        try {
+            publisher.publish(batch);
+        } finally {
+            synchronized (this) {
+                draining = false;
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * @return the pending jobs that can be published together with the leader, removed from the queue
+     */
+    private List<PendingJob> takeBatch(PendingJob leader) {
+        List<PendingJob> batch = new ArrayList<PendingJob>();
+        for (Iterator<PendingJob> iterator = pending.iterator(); iterator.hasNext(); ) {
+            PendingJob pendingJob = iterator.next();
+            if (pendingJob == leader || leader.job.canShareBatchWith(pendingJob.job)) {
+                batch.add(pendingJob);
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    private Executor getExecutor() {
+        return executor != null ? executor : ExecutorUtil.getPublishExecutor();
+    }
+
+    /**
+     * Publishes one batch on the pool, then hands the rest of the queue back to the pool so pages share its
+     * threads. Keeps draining on the same thread when the pool is full.
+     */
+    private class Drain implements Runnable {
+        @Override
+        public void run() {
+            boolean handedOver = false;
+            try {
+                while (true) {
+                    List<PendingJob> batch;
+                    synchronized (WikiPageQueue.this) {
+                        if (pending.isEmpty()) {
+                            draining = false;
+                            handedOver = true;
+                            return;
+                        }
+                        batch = takeBatch(pending.get(0));
+                    }
+                    publisher.publish(batch);
+
+                    synchronized (WikiPageQueue.this) {
+                        if (pending.isEmpty()) {
+                            draining = false;
+                            handedOver = true;
+                            return;
+                        }
+                    }
+                    try {
+                        getExecutor().execute(this);
+                        handedOver = true;
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        // pool is full, go on here
+                    }
+                }
+            } finally {
+                if (!handedOver) {
+                    synchronized (WikiPageQueue.this) {
+                        draining = false;
+                    }
+                }
+            }
+        }
+    }
+
+    interface BatchPublisher {
+        /**
+         * Publishes the jobs and completes the result of each of them, never throws.
+         */
+        void publish(List<PendingJob> batch);
+    }
+
+    static class PendingJob {
+        final PublishJob job;
+        final PrintStream logger;
+        final SettableFuture<Void> result = SettableFuture.create();
+
+        PendingJob(PublishJob job, PrintStream logger) {
+            this.job = job;
+            this.logger = logger;
+        }
+    }
+}
@@ -8,14 +8,19 @@ import com.intland.jenkins.collector.dto.BuildDto;
 import com.intland.jenkins.collector.dto.PerformanceDto;
 import com.intland.jenkins.collector.dto.TestResultDto;
 
+import java.util.Locale;
+
 public class CsvUtil {
     public static String convertDtoToPerformanceRow(PerformanceDto performanceDto, long currentTime) {
-        return String.format("%s;%s;%s;%s;\n", System.currentTimeMillis(), performanceDto.getAverageResponseTime(),
-                performanceDto.getMedianResponseTime(), performanceDto.getMaximumResponseTime());
+        return String.format("%s;%s;%s;%s;%s;%s;%s;\n", System.currentTimeMillis(), performanceDto.getAverageResponseTime(),
+                performanceDto.getMedianResponseTime(), performanceDto.getMaximumResponseTime(),
+                performanceDto.getP90ResponseTime(), performanceDto.getP95ResponseTime(), performanceDto.getP99ResponseTime());
     }
 
     public static String convertDtoToTestResultRow(BuildDto buildDto, TestResultDto testResultDto, long currentTime) {
-        return String.format("%s;%s;%s;%s;%s\n", currentTime, buildDto.getBuildDuration(),
-                testResultDto.getTestDuration(), testResultDto.getFailCount(), testResultDto.getTotalCount());
+        return String.format(Locale.ROOT, "%s;%s;%s;%s;%s;%s;%s;%s;%.2f\n", currentTime, buildDto.getBuildDuration(),
+                testResultDto.getTestDuration(), testResultDto.getFailCount(), testResultDto.getTotalCount(),
+                testResultDto.getNewFailureCount(), testResultDto.getFixedCount(),
+                testResultDto.getFlakyCount(), testResultDto.getFlakinessRate());
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-side thread pools of the plugin. Threads are daemons, time out when idle and the pools are shut
+ * down when Jenkins stops.
+ */
+public class ExecutorUtil {
+    private static final int LOOKUP_THREADS = Integer.getInteger(ExecutorUtil.class.getName() + ".lookupThreads", 8);
+    private static final int PUBLISH_THREADS = Integer.getInteger(ExecutorUtil.class.getName() + ".publishThreads", 4);
+    private static final int PUBLISH_QUEUE_SIZE = Integer.getInteger(ExecutorUtil.class.getName() + ".publishQueueSize", 100);
+
+    private static ThreadPoolExecutor lookupExecutor;
+    private static ThreadPoolExecutor refreshExecutor;
+    private static ThreadPoolExecutor publishExecutor;
+
+    /**
+     * Pool for short, independent REST lookups (users, repositories). Tasks running here must not wait for
+     * other tasks of the same pool.
+     */
+    public static synchronized ExecutorService getLookupExecutor() {
+        if (lookupExecutor == null) {
+            lookupExecutor = createExecutor(LOOKUP_THREADS, "codeBeamer lookup");
+        }
+        return lookupExecutor;
+    }
+
+    /**
+     * Single thread for background refreshes of cached lookups, these may fan out to the lookup pool.
+     */
+    public static synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = createExecutor(1, "codeBeamer cache refresh");
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Bounded pool publishing builds in the background, rejects work when its queue is full.
+     */
+    public static synchronized ExecutorService getPublishExecutor() {
+        if (publishExecutor == null) {
+            publishExecutor = createExecutor(PUBLISH_THREADS, new LinkedBlockingQueue<Runnable>(PUBLISH_QUEUE_SIZE), "codeBeamer publishing");
+        }
+        return publishExecutor;
+    }
+
+    @Terminator
+    public static synchronized void shutdown() {
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            lookupExecutor = null;
+        }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        if (publishExecutor != null) {
+            // let queued builds finish publishing for a moment before giving up on them
+            publishExecutor.shutdown();
+            try {
+                publishExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publishExecutor.shutdownNow();
+            publishExecutor = null;
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads, String name) {
+        return createExecutor(threads, new LinkedBlockingQueue<Runnable>(), name);
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads, BlockingQueue<Runnable> queue, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                queue, new NamingThreadFactory(new DaemonThreadFactory(), name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wiki markup template parsed once into literal and $placeholder$ segments. Rendering is a single pass into a
+ * pre-sized buffer, values are copied as they are. Placeholders without a value are rendered unchanged.
+ */
+public class MarkupTemplate {
+    private static final int MAX_CACHED_TEMPLATES = 100;
+    private static final ConcurrentMap<String, MarkupTemplate> CACHE = new ConcurrentHashMap<String, MarkupTemplate>();
+
+    // literals[i] precedes placeholders[i], the last literal follows the last placeholder
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private MarkupTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.placeholders = placeholders.toArray(new String[placeholders.size()]);
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MarkupTemplate compile(String template) {
+        MarkupTemplate compiled = CACHE.get(template);
+        if (compiled == null) {
+            compiled = parse(template);
+            if (CACHE.size() >= MAX_CACHED_TEMPLATES) {
+                CACHE.clear();
+            }
+            CACHE.put(template, compiled);
+        }
+        return compiled;
+    }
+
+    public String render(Map<String, String> values) {
+        String[] resolved = new String[placeholders.length];
+        int length = literalLength;
+        for (int i = 0; i < placeholders.length; i++) {
+            String value = values.get(placeholders[i]);
+            resolved[i] = value != null ? value : "$" + placeholders[i] + "$";
+            length += resolved[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < placeholders.length; i++) {
+            result.append(literals[i]).append(resolved[i]);
+        }
+        result.append(literals[placeholders.length]);
+        return result.toString();
+    }
+
+    private static MarkupTemplate parse(String template) {
+        List<String> literals = new ArrayList<String>();
+        List<String> placeholders = new ArrayList<String>();
+
+        int literalStart = 0;
+        int index = template.indexOf('$');
+        while (index != -1) {
+            int end = template.indexOf('$', index + 1);
+            if (end == -1) {
+                break;
+            }
+
+            if (isPlaceholderName(template, index + 1, end)) {
+                literals.add(template.substring(literalStart, index));
+                placeholders.add(template.substring(index + 1, end));
+                literalStart = end + 1;
+                index = template.indexOf('$', literalStart);
+            } else {
+                // a lone $, the closing one may open the next placeholder
+                index = end;
+            }
+        }
+        literals.add(template.substring(literalStart));
+
+        return new MarkupTemplate(literals, placeholders);
+    }
+
+    private static boolean isPlaceholderName(String template, int start, int end) {
+        if (start == end || !Character.isLetter(template.charAt(start))) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (!Character.isLetterOrDigit(template.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,10 +8,12 @@ import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.intland.jenkins.PostBuildScript;
 import hudson.model.Item;
 import hudson.security.ACL;
 import jenkins.model.Jenkins;
 
+import java.io.File;
 import java.util.Collections;
 
 public class PluginUtil {
@@ -31,6 +33,17 @@ public class PluginUtil {
         return Jenkins.getInstance().getPlugin(pluginName) != null;
     }
 
+    /**
+     * @return the plugin's directory under the Jenkins root, null when Jenkins is not running
+     */
+    public static File getPluginDataDir() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || jenkins.getRootDir() == null) {
+            return null;
+        }
+        return new File(jenkins.getRootDir(), PostBuildScript.PLUGIN_SHORTNAME);
+    }
+
     public static StandardUsernamePasswordCredentials getCredentials(Item job, String credentialsId) {
         StandardUsernamePasswordCredentials credentials = CredentialsMatchers.firstOrNull(
                 CredentialsProvider.lookupCredentials(
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the tests of a build to the failures of the previous build by the hashes of their names. Only the
+ * failures are kept as hashes, the passed tests are probed one by one, so a suite of a few hundred thousand tests
+ * is compared without holding its names. The names of the first few new failures and fixed tests are kept for
+ * the wiki page.
+ */
+public class TestDiff {
+    private static final int MAX_LISTED_TESTS = 10;
+
+    private final LongHashSet previousFailures;
+    private final LongHashSet failures;
+    private final List<String> newFailures = new ArrayList<String>();
+    private final List<String> fixedTests = new ArrayList<String>();
+    private int newFailureCount;
+    private int fixedCount;
+
+    /**
+     * @param previousFailureHashes failures of the previous build, null when there is no previous build to compare to
+     */
+    public TestDiff(long[] previousFailureHashes, int expectedFailures) {
+        this.previousFailures = previousFailureHashes == null ? null : new LongHashSet(previousFailureHashes);
+        this.failures = new LongHashSet(expectedFailures);
+    }
+
+    public void addFailure(String testName) {
+        addFailure(testName, LongHashSet.hash(testName));
+    }
+
+    /**
+     * @param hash {@link LongHashSet#hash} of the name
+     */
+    public void addFailure(String testName, long hash) {
+        if (failures.add(hash) && previousFailures != null && !previousFailures.contains(hash)) {
+            newFailureCount++;
+            if (newFailures.size() < MAX_LISTED_TESTS) {
+                newFailures.add(testName);
+            }
+        }
+    }
+
+    public void addPass(String testName) {
+        addPass(testName, LongHashSet.hash(testName));
+    }
+
+    public void addPass(String testName, long hash) {
+        if (previousFailures != null && previousFailures.contains(hash)) {
+            fixedCount++;
+            if (fixedTests.size() < MAX_LISTED_TESTS) {
+                fixedTests.add(testName);
+            }
+        }
+    }
+
+    public long[] getFailureHashes() {
+        return failures.toArray();
+    }
+
+    public int getNewFailureCount() {
+        return newFailureCount;
+    }
+
+    public int getFixedCount() {
+        return fixedCount;
+    }
+
+    public List<String> getNewFailures() {
+        return newFailures;
+    }
+
+    public List<String> getFixedTests() {
+        return fixedTests;
+    }
+}
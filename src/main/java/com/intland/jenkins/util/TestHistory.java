@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pass and fail history of the tests of a job over its last 64 builds, kept in a file of the job and updated
+ * once per build, old builds are never read again. Each test is a hash of its name and two bitsets, bit 0 is the
+ * latest build: the builds the test ran in and the builds it failed in. That is 24 bytes per test on disk and in
+ * memory while the history is updated. Tests that have not run in 64 builds are dropped. The number of the latest
+ * build is kept too, a build published again replaces its results instead of being counted twice.
+ *
+ * A test is flaky when its result changed at least twice in the runs of the last {@link #WINDOW} builds, e.g.
+ * pass, fail, pass. Only the tests of the current build are rated, by the number of changes.
+ */
+public class TestHistory {
+    public static final int WINDOW = Math.max(3, Math.min(64, Integer.getInteger(TestHistory.class.getName() + ".window", 20)));
+    private static final int FLAKY_FLIPS = 2;
+    private static final int MAX_LISTED_TESTS = 10;
+    private static final int MAGIC = 0x43425448;
+    private static final int VERSION = 2;
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    private long[] keys;
+    private long[] seen;
+    private long[] failed;
+    private int size;
+    private int lastBuildNumber;
+
+    private int testCount;
+    private int flakyCount;
+    private final List<FlakyTest> flakyTests = new ArrayList<FlakyTest>();
+
+    public TestHistory(int expectedSize) {
+        int length = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[length];
+        seen = new long[length];
+        failed = new long[length];
+    }
+
+    /**
+     * The history of a job is updated by one build at a time, builds synchronize on this lock.
+     */
+    public static Object getLock(File file) {
+        String path = file.getAbsolutePath();
+        Object lock = LOCKS.get(path);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = LOCKS.putIfAbsent(path, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * @return the history stored in the file, an empty history if there is no file yet
+     * @throws IOException if the file can't be read or is not a history
+     */
+    public static TestHistory load(File file) throws IOException {
+        if (!file.exists()) {
+            return new TestHistory(0);
+        }
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a test history: " + file);
+            }
+            if (input.readInt() != VERSION) {
+                throw new IOException("Not a test history: " + file);
+            }
+            int lastBuildNumber = input.readInt();
+            int count = input.readInt();
+            TestHistory history = new TestHistory(count);
+            history.lastBuildNumber = lastBuildNumber;
+            for (int i = 0; i < count; i++) {
+                int index = history.indexOf(input.readLong());
+                history.seen[index] = input.readLong();
+                history.failed[index] = input.readLong();
+            }
+            return history;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes the tests that ran in the last 64 builds to a temporary file first, which then replaces the file.
+     */
+    public void save(File file) throws IOException {
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0 && seen[i] != 0) {
+                count++;
+            }
+        }
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(lastBuildNumber);
+            output.writeInt(count);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && seen[i] != 0) {
+                    output.writeLong(keys[i]);
+                    output.writeLong(seen[i]);
+                    output.writeLong(failed[i]);
+                }
+            }
+        } finally {
+            output.close();
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Moves every test one build back, a test not recorded for the new build keeps a gap there. If the build is the
+     * latest one already recorded, e.g. because it is published again, its results are cleared to be recorded anew.
+     */
+    public void startBuild(int buildNumber) {
+        if (buildNumber != lastBuildNumber) {
+            for (int i = 0; i < keys.length; i++) {
+                seen[i] <<= 1;
+                failed[i] <<= 1;
+            }
+            lastBuildNumber = buildNumber;
+        } else {
+            for (int i = 0; i < keys.length; i++) {
+                seen[i] &= ~1L;
+                failed[i] &= ~1L;
+            }
+        }
+        testCount = 0;
+        flakyCount = 0;
+        flakyTests.clear();
+    }
+
+    public void record(String testName, long hash, boolean testFailed) {
+        int index = indexOf(hash);
+        if ((seen[index] & 1) != 0) {
+            // same name twice in a build
+            return;
+        }
+        seen[index] |= 1;
+        if (testFailed) {
+            failed[index] |= 1;
+        }
+        testCount++;
+
+        int flips = countFlips(seen[index], failed[index], WINDOW);
+        if (flips >= FLAKY_FLIPS) {
+            flakyCount++;
+            addFlakyTest(new FlakyTest(testName, flips));
+        }
+    }
+
+    /**
+     * @return the number of times the result changed between consecutive runs in the last builds of the window
+     */
+    static int countFlips(long seen, long failed, int window) {
+        long mask = window >= 64 ? -1L : (1L << window) - 1;
+        long runs = seen & mask;
+        long failures = failed & runs;
+        if (failures == 0 || failures == runs) {
+            return 0;
+        }
+
+        int flips = 0;
+        long previous = -1;
+        for (long bits = runs; bits != 0; bits &= bits - 1) {
+            long result = (failures >>> Long.numberOfTrailingZeros(bits)) & 1;
+            if (previous >= 0 && result != previous) {
+                flips++;
+            }
+            previous = result;
+        }
+        return flips;
+    }
+
+    private void addFlakyTest(FlakyTest flakyTest) {
+        if (flakyTests.size() == MAX_LISTED_TESTS) {
+            FlakyTest leastFlaky = flakyTests.get(MAX_LISTED_TESTS - 1);
+            if (leastFlaky.flips >= flakyTest.flips) {
+                return;
+            }
+            flakyTests.remove(MAX_LISTED_TESTS - 1);
+        }
+        int position = flakyTests.size();
+        while (position > 0 && flakyTests.get(position - 1).flips < flakyTest.flips) {
+            position--;
+        }
+        flakyTests.add(position, flakyTest);
+    }
+
+    private int indexOf(long hash) {
+        // 0 marks a free slot
+        long key = hash == 0 ? 1 : hash;
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int index = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        if (keys[index] == 0) {
+            keys[index] = key;
+            size++;
+        }
+        return index;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldSeen = seen;
+        long[] oldFailed = failed;
+        keys = new long[oldKeys.length * 2];
+        seen = new long[oldKeys.length * 2];
+        failed = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = (int) (oldKeys[i] ^ (oldKeys[i] >>> 32)) & mask;
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                seen[index] = oldSeen[i];
+                failed[index] = oldFailed[i];
+            }
+        }
+    }
+
+    /**
+     * @return the number of tests recorded for the current build
+     */
+    public int getTestCount() {
+        return testCount;
+    }
+
+    public int getFlakyCount() {
+        return flakyCount;
+    }
+
+    /**
+     * @return the share of flaky tests in the current build in percent
+     */
+    public double getFlakinessRate() {
+        return testCount == 0 ? 0 : 100.0 * flakyCount / testCount;
+    }
+
+    /**
+     * @return the flakiest tests of the current build, most result changes first
+     */
+    public List<FlakyTest> getFlakyTests() {
+        return Collections.unmodifiableList(flakyTests);
+    }
+
+    public static class FlakyTest {
+        private final String name;
+        private final int flips;
+
+        private FlakyTest(String name, int flips) {
+            this.name = name;
+            this.flips = flips;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getFlips() {
+            return flips;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a retention policy to a trend csv. The newest rows are kept as they are, older rows are rolled up
+ * into one row per hour or day. Rows are expected newest first, as the plugin always prepends new rows.
+ *
+ * An aggregated row keeps the column layout of the raw rows with the average values, so the chart keeps its
+ * shape, followed by the minimum values, the maximum values and the number of rolled up rows:
+ * <pre>bucketStart;avg1;...;avgN;min1;...;minN;max1;...;maxN;n=count</pre>
+ * Averages are always written with a fraction, so rows rolled up again don't compound rounding errors. Minimum and
+ * maximum values are written as integers where all the rolled up values were integers.
+ */
+public class TrendCsvCompactor {
+    private static final String SEPARATOR = ";";
+    private static final String COUNT_PREFIX = "n=";
+
+    public enum Granularity {
+        HOURLY(TimeUnit.HOURS.toMillis(1)),
+        DAILY(TimeUnit.DAYS.toMillis(1));
+
+        private final long bucketMillis;
+
+        Granularity(long bucketMillis) {
+            this.bucketMillis = bucketMillis;
+        }
+
+        public static Granularity fromName(String name) {
+            for (Granularity granularity : values()) {
+                if (granularity.name().equalsIgnoreCase(name)) {
+                    return granularity;
+                }
+            }
+            return DAILY;
+        }
+    }
+
+    private final int keepRows;
+    private final long bucketMillis;
+
+    public TrendCsvCompactor(int keepRows, Granularity granularity) {
+        this.keepRows = keepRows;
+        this.bucketMillis = granularity.bucketMillis;
+    }
+
+    public int getKeepRows() {
+        return keepRows;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrendCsvCompactor)) {
+            return false;
+        }
+        TrendCsvCompactor other = (TrendCsvCompactor) o;
+        return keepRows == other.keepRows && bucketMillis == other.bucketMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * keepRows + (int) (bucketMillis ^ (bucketMillis >>> 32));
+    }
+
+    public void compact(Reader input, Writer output) throws IOException {
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        Bucket bucket = null;
+        int rawRows = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            if (rawRows < keepRows) {
+                output.write(line);
+                output.write('\n');
+                rawRows++;
+                continue;
+            }
+
+            Row row = Row.parse(line);
+            if (row == null) {
+                // not a trend row, keep it untouched
+                bucket = flush(bucket, output);
+                output.write(line);
+                output.write('\n');
+                continue;
+            }
+
+            long bucketStart = row.timestamp - (row.timestamp % bucketMillis);
+            if (bucket != null && !bucket.accepts(bucketStart, row)) {
+                bucket = flush(bucket, output);
+            }
+            if (bucket == null) {
+                bucket = new Bucket(bucketStart, row.width(), row.trailingSeparator);
+            }
+            bucket.add(row);
+        }
+
+        flush(bucket, output);
+        output.flush();
+    }
+
+    private static Bucket flush(Bucket bucket, Writer output) throws IOException {
+        if (bucket != null) {
+            bucket.writeTo(output);
+        }
+        return null;
+    }
+
+    private static String format(double value, boolean integral) {
+        if (integral) {
+            return String.valueOf(Math.round(value));
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static boolean isIntegral(double value) {
+        return value == Math.rint(value);
+    }
+
+    private static class Row {
+        private long timestamp;
+        private double[] avg;
+        private double[] min;
+        private double[] max;
+        private long count;
+        private boolean trailingSeparator;
+
+        private int width() {
+            return avg.length;
+        }
+
+        private static Row parse(String line) {
+            String[] tokens = line.split(SEPARATOR, -1);
+            int end = tokens.length;
+            boolean trailingSeparator = false;
+            if (end > 0 && tokens[end - 1].isEmpty()) {
+                trailingSeparator = true;
+                end--;
+            }
+            if (end < 2) {
+                return null;
+            }
+
+            try {
+                Row row = new Row();
+                row.timestamp = Long.parseLong(tokens[0].trim());
+                row.trailingSeparator = trailingSeparator;
+
+                String last = tokens[end - 1].trim();
+                if (last.startsWith(COUNT_PREFIX)) {
+                    int valueCount = end - 2;
+                    if (valueCount % 3 != 0) {
+                        return null;
+                    }
+                    int width = valueCount / 3;
+                    row.count = Long.parseLong(last.substring(COUNT_PREFIX.length()));
+                    row.avg = parseValues(tokens, 1, width);
+                    row.min = parseValues(tokens, 1 + width, width);
+                    row.max = parseValues(tokens, 1 + 2 * width, width);
+                } else {
+                    row.count = 1;
+                    row.avg = parseValues(tokens, 1, end - 1);
+                    row.min = row.avg;
+                    row.max = row.avg;
+                }
+                return row;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static double[] parseValues(String[] tokens, int offset, int length) {
+            double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Double.parseDouble(tokens[offset + i].trim());
+            }
+            return values;
+        }
+    }
+
+    private static class Bucket {
+        private final long start;
+        private final boolean trailingSeparator;
+        private final double[] sum;
+        private final double[] min;
+        private final double[] max;
+        private final boolean[] integral;
+        private long count;
+
+        private Bucket(long start, int width, boolean trailingSeparator) {
+            this.start = start;
+            this.trailingSeparator = trailingSeparator;
+            this.sum = new double[width];
+            this.min = new double[width];
+            this.max = new double[width];
+            this.integral = new boolean[width];
+            for (int i = 0; i < width; i++) {
+                min[i] = Double.MAX_VALUE;
+                max[i] = -Double.MAX_VALUE;
+                integral[i] = true;
+            }
+        }
+
+        private boolean accepts(long bucketStart, Row row) {
+            return start == bucketStart && sum.length == row.width();
+        }
+
+        private void add(Row row) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += row.avg[i] * row.count;
+                min[i] = Math.min(min[i], row.min[i]);
+                max[i] = Math.max(max[i], row.max[i]);
+                integral[i] &= isIntegral(row.min[i]) && isIntegral(row.max[i]);
+            }
+            count += row.count;
+        }
+
+        private void writeTo(Writer output) throws IOException {
+            StringBuilder line = new StringBuilder(16 + sum.length * 36);
+            line.append(start);
+            for (int i = 0; i < sum.length; i++) {
+                line.append(SEPARATOR).append(format(sum[i] / count, false));
+            }
+            for (int i = 0; i < sum.length; i++) {
+                line.append(SEPARATOR).append(format(min[i], integral[i]));
+            }
+            for (int i = 0; i < sum.length; i++) {
+                line.append(SEPARATOR).append(format(max[i], integral[i]));
+            }
+            line.append(SEPARATOR).append(COUNT_PREFIX).append(count);
+            if (trailingSeparator) {
+                line.append(SEPARATOR);
+            }
+            line.append('\n');
+            output.write(line.toString());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of a trend csv split into segment attachments, e.g. <code>jenkinsbuildtrends-3.csv</code>. New rows go to
+ * the first, current segment until it holds the configured number of rows or bytes, then it is sealed and a new
+ * segment is started. Sealed segments are never downloaded or uploaded again, so a build transfers a bounded
+ * amount of attachment data however long the history is.
+ *
+ * The manifest is itself a small attachment, one segment per line, newest first:
+ * <pre>name;rows;bytes</pre>
+ * The trend attachment written before segmenting was turned on is listed last with an unknown size and is sealed.
+ */
+public class TrendSegmentManifest {
+    private static final String SEPARATOR = ";";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final long MAX_SEGMENT_BYTES = Long.getLong(TrendSegmentManifest.class.getName() + ".maxSegmentBytes", 256 * 1024L);
+
+    private final String baseName;
+    private final String extension;
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    public TrendSegmentManifest(String attachmentName) {
+        int dot = attachmentName.lastIndexOf('.');
+        this.baseName = dot < 0 ? attachmentName : attachmentName.substring(0, dot);
+        this.extension = dot < 0 ? "" : attachmentName.substring(dot);
+    }
+
+    /**
+     * @return e.g. <code>jenkinsbuildtrends.manifest</code> for <code>jenkinsbuildtrends.csv</code>
+     */
+    public static String getManifestName(String attachmentName) {
+        int dot = attachmentName.lastIndexOf('.');
+        return (dot < 0 ? attachmentName : attachmentName.substring(0, dot)) + MANIFEST_SUFFIX;
+    }
+
+    public static TrendSegmentManifest parse(String attachmentName, String content) {
+        TrendSegmentManifest manifest = new TrendSegmentManifest(attachmentName);
+        for (String line : content.split("\n")) {
+            String[] tokens = line.trim().split(SEPARATOR, -1);
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            manifest.segments.add(new Segment(tokens[0], parseSize(tokens, 1), parseSize(tokens, 2)));
+        }
+        return manifest;
+    }
+
+    private static long parseSize(String[] tokens, int index) {
+        if (tokens.length <= index || tokens[index].trim().isEmpty()) {
+            return Segment.UNKNOWN;
+        }
+        try {
+            return Long.parseLong(tokens[index].trim());
+        } catch (NumberFormatException e) {
+            return Segment.UNKNOWN;
+        }
+    }
+
+    /**
+     * Lists an existing attachment as the oldest, sealed segment.
+     */
+    public void addSealed(String name) {
+        segments.add(new Segment(name, Segment.UNKNOWN, Segment.UNKNOWN));
+    }
+
+    /**
+     * Accounts the rows to the current segment, or to a new one when the current segment is full. A segment is only
+     * checked before the rows are added, so the rows of a batch are never split across segments.
+     *
+     * @return the segment the rows have to be prepended to
+     */
+    public Segment append(String rows, int maxSegmentRows) {
+        Segment current = segments.isEmpty() ? null : segments.get(0);
+        if (current == null || !current.hasRoom(maxSegmentRows, MAX_SEGMENT_BYTES)) {
+            current = new Segment(baseName + "-" + nextIndex() + extension, 0, 0);
+            segments.add(0, current);
+        }
+        current.rows += countRows(rows);
+        current.bytes += rows.getBytes(StandardCharsets.UTF_8).length;
+        return current;
+    }
+
+    private int nextIndex() {
+        int index = 0;
+        String prefix = baseName + "-";
+        for (Segment segment : segments) {
+            String name = segment.name;
+            if (name.startsWith(prefix) && name.endsWith(extension)) {
+                try {
+                    index = Math.max(index, Integer.parseInt(name.substring(prefix.length(), name.length() - extension.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return index + 1;
+    }
+
+    private static int countRows(String rows) {
+        int count = 0;
+        for (int i = 0; i < rows.length(); i++) {
+            if (rows.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return rows.isEmpty() || rows.charAt(rows.length() - 1) == '\n' ? count : count + 1;
+    }
+
+    /**
+     * @return the segments, newest first
+     */
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    public String format() {
+        StringBuilder result = new StringBuilder(segments.size() * 48);
+        for (Segment segment : segments) {
+            result.append(segment.name).append(SEPARATOR);
+            if (segment.rows != Segment.UNKNOWN) {
+                result.append(segment.rows);
+            }
+            result.append(SEPARATOR);
+            if (segment.bytes != Segment.UNKNOWN) {
+                result.append(segment.bytes);
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    public static class Segment {
+        private static final long UNKNOWN = -1;
+
+        private final String name;
+        private long rows;
+        private long bytes;
+
+        private Segment(String name, long rows, long bytes) {
+            this.name = name;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        private boolean hasRoom(int maxRows, long maxBytes) {
+            return rows != UNKNOWN && bytes != UNKNOWN && rows < maxRows && bytes < maxBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+
+package com.intland.jenkins.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Local copy of a trend csv attachment in a memory mapped file of fixed size records, the csv uploaded to
+ * codeBeamer is generated from it, so the old attachment never has to be downloaded. Each record is a row:
+ * timestamp, build number, number of rolled up rows and up to {@link #MAX_COLUMNS} values, e.g. the durations
+ * and test counts or the response times of the build, followed by the minimum and maximum values of a rolled up row. Records are only appended, the number of records in the
+ * header is written after the records, so a record torn by a crash is never read.
+ *
+ * A store belongs to one wiki page and is only accessed by the publishing queue of that page, one batch at a time.
+ */
+public class TrendStore implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TrendStore.class.getName());
+    public static final int MAX_COLUMNS = 8;
+    private static final int MAGIC = 0x43425453;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int COUNT_OFFSET = 8;
+    // timestamp, build number, rolled up rows, width, flags, padding, values, minimum values, maximum values
+    private static final int RECORD_BYTES = 24 + 3 * MAX_COLUMNS * 8;
+    private static final int MIN_OFFSET = 24 + MAX_COLUMNS * 8;
+    private static final int MAX_OFFSET = 24 + 2 * MAX_COLUMNS * 8;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int TRAILING_SEPARATOR = 1;
+    private static final int ROLLED_UP = 2;
+    private static final String SEPARATOR = ";";
+    private static final String COUNT_PREFIX = "n=";
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private TrendStore(File file, RandomAccessFile randomAccessFile) {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * @return the file of the attachment of the page in the directory, e.g. <code>1001-3f2a.../jenkinsbuildtrends.bin</code>
+     */
+    public static File getFile(File directory, String url, String wikiId, String attachmentName) {
+        String pageDirectory = wikiId + "-" + Long.toHexString(LongHashSet.hash(url));
+        String fileName = attachmentName.endsWith(".csv")
+                ? attachmentName.substring(0, attachmentName.length() - ".csv".length()) + ".bin"
+                : attachmentName + ".bin";
+        return new File(new File(directory, pageDirectory), fileName);
+    }
+
+    /**
+     * Opens the store, an empty one is created if there is no file yet.
+     *
+     * @throws IOException if the file can't be opened or is not a trend store
+     */
+    public static TrendStore open(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        TrendStore store = new TrendStore(file, new RandomAccessFile(file, "rw"));
+        try {
+            long length = store.channel.size();
+            if (length == 0) {
+                store.map(INITIAL_CAPACITY);
+                store.buffer.putInt(0, MAGIC);
+                store.buffer.putInt(4, VERSION);
+                store.buffer.putInt(COUNT_OFFSET, 0);
+                store.buffer.force();
+            } else {
+                long capacity = (length - HEADER_BYTES) / RECORD_BYTES;
+                if (length < HEADER_BYTES || capacity > Integer.MAX_VALUE) {
+                    throw new InvalidStoreException(file);
+                }
+                store.map((int) capacity);
+                store.size = store.buffer.getInt(COUNT_OFFSET);
+                if (store.buffer.getInt(0) != MAGIC || store.buffer.getInt(4) != VERSION
+                        || store.size < 0 || store.size > store.capacity) {
+                    throw new InvalidStoreException(file);
+                }
+            }
+            return store;
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the store like {@link #open}, but a file that is not a trend store, e.g. one truncated by a full disk, is
+     * moved aside to <code>*.corrupt</code> and an empty store is created in its place.
+     */
+    public static TrendStore openOrReplace(File file) throws IOException {
+        try {
+            return open(file);
+        } catch (InvalidStoreException e) {
+            File corruptFile = new File(file.getPath() + ".corrupt");
+            Files.move(file.toPath(), corruptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.warning(String.format("%s, moved to %s", e.getMessage(), corruptFile));
+            return open(file);
+        }
+    }
+
+    private void map(int newCapacity) throws IOException {
+        long length = HEADER_BYTES + (long) newCapacity * RECORD_BYTES;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Trend store is full: " + file);
+        }
+        // mapping beyond the end of the file extends it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = newCapacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Appends a row of the trend csv.
+     *
+     * @param buildNumber 0 if unknown
+     * @return false if the line is not a trend row, nothing is appended then
+     */
+    public boolean append(String row, int buildNumber) throws IOException {
+        Record record = Record.parse(row);
+        if (record == null) {
+            return false;
+        }
+        record.buildNumber = buildNumber;
+        List<Record> records = new ArrayList<Record>(1);
+        records.add(record);
+        write(records);
+        return true;
+    }
+
+    /**
+     * Appends the rows of a trend csv written before the store, rows are newest first like in the attachment.
+     * Rolled up rows keep their averages, minimum and maximum values and count.
+     *
+     * @return the number of lines that are not trend rows and were skipped
+     */
+    public int importCsv(Reader csv) throws IOException {
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        List<Record> records = new ArrayList<Record>();
+        int skipped = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            Record record = Record.parse(line);
+            if (record == null) {
+                skipped++;
+            } else {
+                records.add(record);
+            }
+        }
+
+        List<Record> oldestFirst = new ArrayList<Record>(records.size());
+        for (int i = records.size() - 1; i >= 0; i--) {
+            oldestFirst.add(records.get(i));
+        }
+        write(oldestFirst);
+        return skipped;
+    }
+
+    private void write(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        int newSize = size + records.size();
+        if (newSize > capacity) {
+            int newCapacity = capacity;
+            while (newCapacity < newSize) {
+                newCapacity = newCapacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : newCapacity * 2;
+            }
+            map(newCapacity);
+        }
+
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).writeTo(buffer, offset(size + i));
+        }
+        buffer.force();
+        buffer.putInt(COUNT_OFFSET, newSize);
+        buffer.force();
+        size = newSize;
+    }
+
+    /**
+     * Writes the rows as trend csv, newest first. Values are written as integers where they have no fraction,
+     * like the rows the plugin creates. Rolled up rows are written in the layout of {@link TrendCsvCompactor},
+     * so their count still weighs their averages when they are rolled up again.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        for (int i = size - 1; i >= 0; i--) {
+            line.setLength(0);
+            int offset = offset(i);
+            line.append(buffer.getLong(offset));
+            int width = getWidth(i);
+            appendValues(line, offset + 24, width);
+            byte flags = buffer.get(offset + 17);
+            if ((flags & ROLLED_UP) != 0) {
+                appendValues(line, offset + MIN_OFFSET, width);
+                appendValues(line, offset + MAX_OFFSET, width);
+                line.append(SEPARATOR).append(COUNT_PREFIX).append(buffer.getInt(offset + 12));
+            }
+            if ((flags & TRAILING_SEPARATOR) != 0) {
+                line.append(SEPARATOR);
+            }
+            line.append('\n');
+            writer.write(line.toString());
+        }
+        writer.flush();
+    }
+
+    private void appendValues(StringBuilder line, int offset, int width) {
+        for (int column = 0; column < width; column++) {
+            line.append(SEPARATOR);
+            appendValue(line, buffer.getDouble(offset + column * 8));
+        }
+    }
+
+    private static void appendValue(StringBuilder line, double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            line.append(Math.round(value));
+        } else {
+            line.append(String.format(Locale.ROOT, "%.2f", value));
+        }
+    }
+
+    private static int offset(int index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * @param index 0 is the oldest row
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return buffer.getLong(offset(index));
+    }
+
+    /**
+     * @return 0 for rows imported from the attachment
+     */
+    public int getBuildNumber(int index) {
+        checkIndex(index);
+        return buffer.getInt(offset(index) + 8);
+    }
+
+    /**
+     * @return the number of rows rolled up into the row, 1 for the row of a build
+     */
+    public int getRowCount(int index) {
+        checkIndex(index);
+        return buffer.getInt(offset(index) + 12);
+    }
+
+    public int getWidth(int index) {
+        checkIndex(index);
+        return buffer.get(offset(index) + 16);
+    }
+
+    /**
+     * @param column 0 is the first value after the timestamp
+     */
+    public double getValue(int index, int column) {
+        if (column < 0 || column >= getWidth(index)) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", width: " + getWidth(index));
+        }
+        return buffer.getDouble(offset(index) + 24 + column * 8);
+    }
+
+    /**
+     * The mapping itself is released by the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        randomAccessFile.close();
+    }
+
+    private static class Record {
+        private long timestamp;
+        private int buildNumber;
+        private int rowCount = 1;
+        private boolean trailingSeparator;
+        private double[] values;
+        private double[] min;
+        private double[] max;
+
+        /**
+         * @return null if the line is not a trend row
+         */
+        private static Record parse(String line) {
+            String[] tokens = line.trim().split(SEPARATOR, -1);
+            int end = tokens.length;
+            Record record = new Record();
+            if (end > 0 && tokens[end - 1].isEmpty()) {
+                record.trailingSeparator = true;
+                end--;
+            }
+            if (end < 2) {
+                return null;
+            }
+
+            try {
+                record.timestamp = Long.parseLong(tokens[0].trim());
+                int width = end - 1;
+                String last = tokens[end - 1].trim();
+                boolean rolledUp = last.startsWith(COUNT_PREFIX);
+                if (rolledUp) {
+                    // bucketStart;avg...;min...;max...;n=count
+                    if ((end - 2) % 3 != 0) {
+                        return null;
+                    }
+                    record.rowCount = Integer.parseInt(last.substring(COUNT_PREFIX.length()));
+                    width = (end - 2) / 3;
+                }
+                if (width == 0 || width > MAX_COLUMNS) {
+                    return null;
+                }
+
+                record.values = parseValues(tokens, 1, width);
+                if (rolledUp) {
+                    record.min = parseValues(tokens, 1 + width, width);
+                    record.max = parseValues(tokens, 1 + 2 * width, width);
+                }
+                return record;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static double[] parseValues(String[] tokens, int offset, int length) {
+            double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Double.parseDouble(tokens[offset + i].trim());
+            }
+            return values;
+        }
+
+        private void writeTo(MappedByteBuffer buffer, int offset) {
+            buffer.putLong(offset, timestamp);
+            buffer.putInt(offset + 8, buildNumber);
+            buffer.putInt(offset + 12, rowCount);
+            buffer.put(offset + 16, (byte) values.length);
+            int flags = (trailingSeparator ? TRAILING_SEPARATOR : 0) | (min != null ? ROLLED_UP : 0);
+            buffer.put(offset + 17, (byte) flags);
+            putValues(buffer, offset + 24, values);
+            putValues(buffer, offset + MIN_OFFSET, min != null ? min : values);
+            putValues(buffer, offset + MAX_OFFSET, max != null ? max : values);
+        }
+
+        private static void putValues(MappedByteBuffer buffer, int offset, double[] values) {
+            for (int i = 0; i < MAX_COLUMNS; i++) {
+                buffer.putDouble(offset + i * 8, i < values.length ? values[i] : 0);
+            }
+        }
+    }
+
+    private static class InvalidStoreException extends IOException {
+        private InvalidStoreException(File file) {
+            super("Not a trend store: " + file);
+        }
+    }
+}
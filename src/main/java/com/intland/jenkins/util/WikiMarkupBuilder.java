@@ -9,40 +9,65 @@ import com.intland.jenkins.collector.dto.PerformanceDto;
 import com.intland.jenkins.collector.dto.ScmDto;
 import com.intland.jenkins.collector.dto.TestResultDto;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 public class WikiMarkupBuilder {
     private static final String SUCCESS_TITLE_COLOR = "#000000";
     private static final String FAIL_TITLE_COLOR = "#ff0000";
 
-    private final String TEMPLATE_HEADER = "\n//DO NOT MODIFY! \n//Generated by plugin version: $pluginVersion$ at: $buildTime$" +
+    private static final String START_OF_BUILD = "//DO NOT MODIFY";
+
+    private static final String TEMPLATE_HEADER = "\n//DO NOT MODIFY! \n//Generated by plugin version: $pluginVersion$ at: $buildTime$" +
             "\n!2 %%(color: $titleColor$;)Build #$buildId$ ($buildTime$)%!\n[{Table\n\n" +
             "|__Duration__\n" +
             "|[$duration$|$projectUrl$buildTimeTrend]$testDuration$ @ $builtOn$\n\n| \n";
-    private final String TEMPLATE_TESTREPORT = "__Test Result__ \n" +
-            "|__[$failedTestCount$/$allTestCount$|$buildUrl$testReport/] failures__ $failedDifference$\n\n";
-    private final String TEMPLATE_PERFORMANCE = "__Performance Result__ \n" +
+    private static final String TEMPLATE_TESTREPORT = "__Test Result__ \n" +
+            "|__[$failedTestCount$/$allTestCount$|$buildUrl$testReport/] failures__ $failedDifference$$testDiff$$flakyTests$\n\n";
+    private static final String TEMPLATE_PERFORMANCE = "__Performance Result__ \n" +
             "|__\n" +
             "*Average response time: $averageResponseTime$ ms \n" +
             "*Median response time: $medianResponseTime$ ms \n" +
+            "*90th percentile response time: $p90ResponseTime$ ms \n" +
+            "*95th percentile response time: $p95ResponseTime$ ms \n" +
+            "*99th percentile response time: $p99ResponseTime$ ms \n" +
             "*Maximum response time: $maximumResponseTime$ ms \n\n";
-    private final String TEMPLATE_FOOTER = "|__[Tested changes|$buildUrl$changes]__\n" +
+    private static final String TEMPLATE_FOOTER = "|__[Tested changes|$buildUrl$changes]__\n" +
             "|__\n" +
             "$changes$ \n\n" +
             "|__Repository__\n" +
             "|$repositoryLine$\n" +
             "}] \n";
 
-    private String content;
+    private static final MarkupTemplate TESTREPORT_TEMPLATE = MarkupTemplate.compile(TEMPLATE_HEADER + TEMPLATE_TESTREPORT + TEMPLATE_FOOTER);
+    private static final MarkupTemplate PERFORMANCE_TEMPLATE = MarkupTemplate.compile(TEMPLATE_HEADER + TEMPLATE_PERFORMANCE + TEMPLATE_FOOTER);
+
+    private MarkupTemplate template;
+    private final Map<String, String> values = new HashMap<String, String>();
 
     public WikiMarkupBuilder() {
     }
 
     public WikiMarkupBuilder initWithTestReportTemplate() {
-        content = TEMPLATE_HEADER + TEMPLATE_TESTREPORT + TEMPLATE_FOOTER;
+        template = TESTREPORT_TEMPLATE;
         return this;
     }
 
     public WikiMarkupBuilder initWithPerformanceTemplate() {
-        content = TEMPLATE_HEADER + TEMPLATE_PERFORMANCE + TEMPLATE_FOOTER;
+        template = PERFORMANCE_TEMPLATE;
+        return this;
+    }
+
+    /**
+     * Uses a template configured on the job, the build marker is added when missing as the page truncation relies on it.
+     */
+    public WikiMarkupBuilder initWithCustomTemplate(String customTemplate) {
+        if (!customTemplate.contains(START_OF_BUILD)) {
+            customTemplate = "\n" + START_OF_BUILD + "! \n" + customTemplate;
+        }
+        template = MarkupTemplate.compile(customTemplate);
         return this;
     }
 
@@ -62,6 +87,8 @@ public class WikiMarkupBuilder {
         return this.withTitleColor(titleColor)
                 .withTestDuration(testResultDto.getFormattedTestDuration())
                 .withFailedDifference(testResultDto.getFailedDifference())
+                .withTestDiff(formatTestDiff(testResultDto))
+                .withFlakyTests(formatFlakyTests(testResultDto))
                 .withAllTestCount(String.valueOf(testResultDto.getTotalCount()))
                 .withFailedTestCount(String.valueOf(testResultDto.getFailCount()));
     }
@@ -71,6 +98,7 @@ public class WikiMarkupBuilder {
         return this.withAverageResponseTime(String.valueOf(performanceDto.getAverageResponseTime()))
                 .withMedianResponseTime(String.valueOf(performanceDto.getMedianResponseTime()))
                 .withMaximumResponseTime(String.valueOf(performanceDto.getMaximumResponseTime()))
+                .withPercentileResponseTimes(performanceDto)
                 .withTestDuration("")
                 .withTitleColor(titleColor);
 
@@ -82,92 +110,166 @@ public class WikiMarkupBuilder {
     }
 
     private WikiMarkupBuilder withBuildId(String buildId) {
-        content = content.replace("$buildId$", buildId);
+        values.put("buildId", buildId);
         return this;
     }
 
     private WikiMarkupBuilder withPluginVersion(String pluginVersion) {
-        content = content.replace("$pluginVersion$", pluginVersion);
+        values.put("pluginVersion", pluginVersion);
         return this;
     }
 
     private WikiMarkupBuilder withDuration(String duration) {
-        content = content.replace("$duration$", duration);
+        values.put("duration", duration);
         return this;
     }
 
     private WikiMarkupBuilder withProjectUrl(String projectUrl) {
-        content = content.replace("$projectUrl$", projectUrl);
+        values.put("projectUrl", projectUrl);
         return this;
     }
 
     private WikiMarkupBuilder withBuildTime(String buildTime) {
-        content = content.replaceAll("\\$buildTime\\$", buildTime);
+        values.put("buildTime", buildTime);
         return this;
     }
 
     private WikiMarkupBuilder withBuildUrl(String buildUrl) {
-        content = content.replaceAll("\\$buildUrl\\$", buildUrl);
+        values.put("buildUrl", buildUrl);
         return this;
     }
 
     private WikiMarkupBuilder withBuiltOn(String builtOn) {
-        content = content.replace("$builtOn$", builtOn);
+        values.put("builtOn", builtOn);
         return this;
     }
 
     public WikiMarkupBuilder withTitleColor(String titleColor) {
-        content = content.replace("$titleColor$", titleColor);
+        values.put("titleColor", titleColor);
         return this;
     }
 
     private WikiMarkupBuilder withTestDuration(String testDuration) {
         String duration = !testDuration.equals("") ? ", test duration: " + testDuration : "";
-        content = content.replace("$testDuration$", duration);
+        values.put("testDuration", duration);
         return this;
     }
 
     private WikiMarkupBuilder withFailedDifference(String failedDifference) {
-        content = content.replace("$failedDifference$", failedDifference);
+        values.put("failedDifference", failedDifference);
         return this;
     }
 
     private WikiMarkupBuilder withAllTestCount(String allTestCount) {
-        content = content.replace("$allTestCount$", allTestCount);
+        values.put("allTestCount", allTestCount);
         return this;
     }
 
     private WikiMarkupBuilder withFailedTestCount(String failedTestCount) {
-        content = content.replaceAll("\\$failedTestCount\\$", failedTestCount);
+        values.put("failedTestCount", failedTestCount);
+        return this;
+    }
+
+    private WikiMarkupBuilder withTestDiff(String testDiff) {
+        values.put("testDiff", testDiff);
+        return this;
+    }
+
+    /**
+     * @return e.g. <code>\n* 2 new failures: a.b.CTest.one, a.b.CTest.two\n* 1 fixed: a.b.DTest.three</code>, empty if
+     * no test started failing or was fixed
+     */
+    static String formatTestDiff(TestResultDto testResultDto) {
+        StringBuilder result = new StringBuilder();
+        appendTests(result, testResultDto.getNewFailureCount(), testResultDto.getNewFailureCount() == 1 ? " new failure" : " new failures",
+                testResultDto.getNewFailures());
+        appendTests(result, testResultDto.getFixedCount(), " fixed", testResultDto.getFixedTests());
+        return result.toString();
+    }
+
+    private WikiMarkupBuilder withFlakyTests(String flakyTests) {
+        values.put("flakyTests", flakyTests);
         return this;
     }
 
+    /**
+     * @return e.g. <code>\n* 2 flaky tests (0.50%): a.b.CTest.one (4 changes), a.b.CTest.two (2 changes)</code>,
+     * empty if no test of the build is flaky
+     */
+    static String formatFlakyTests(TestResultDto testResultDto) {
+        int flakyCount = testResultDto.getFlakyCount();
+        if (flakyCount == 0) {
+            return "";
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append("\n* ").append(flakyCount).append(flakyCount == 1 ? " flaky test (" : " flaky tests (")
+                .append(String.format(Locale.ROOT, "%.2f", testResultDto.getFlakinessRate())).append("%)");
+        String separator = ": ";
+        for (TestHistory.FlakyTest flakyTest : testResultDto.getFlakyTests()) {
+            result.append(separator).append(escapeTestName(flakyTest.getName()))
+                    .append(" (").append(flakyTest.getFlips()).append(" changes)");
+            separator = ", ";
+        }
+        if (flakyCount > testResultDto.getFlakyTests().size()) {
+            result.append(" and ").append(flakyCount - testResultDto.getFlakyTests().size()).append(" more");
+        }
+        return result.toString();
+    }
+
+    private static String escapeTestName(String testName) {
+        // '[' would start a link and '|' a new table cell
+        return testName.replace("[", "[[").replace("|", "~|");
+    }
+
+    private static void appendTests(StringBuilder result, int count, String label, List<String> testNames) {
+        if (count == 0) {
+            return;
+        }
+        result.append("\n* ").append(count).append(label);
+        String separator = ": ";
+        for (String testName : testNames) {
+            result.append(separator).append(escapeTestName(testName));
+            separator = ", ";
+        }
+        if (count > testNames.size()) {
+            result.append(" and ").append(count - testNames.size()).append(" more");
+        }
+    }
+
     private WikiMarkupBuilder withAverageResponseTime(String averageResponseTime) {
-        content = content.replace("$averageResponseTime$", averageResponseTime);
+        values.put("averageResponseTime", averageResponseTime);
         return this;
     }
 
     private WikiMarkupBuilder withMedianResponseTime(String medianResponseTime) {
-        content = content.replace("$medianResponseTime$", medianResponseTime);
+        values.put("medianResponseTime", medianResponseTime);
         return this;
     }
 
     private WikiMarkupBuilder withMaximumResponseTime(String maximumResponseTime) {
-        content = content.replace("$maximumResponseTime$", maximumResponseTime);
+        values.put("maximumResponseTime", maximumResponseTime);
+        return this;
+    }
+
+    private WikiMarkupBuilder withPercentileResponseTimes(PerformanceDto performanceDto) {
+        values.put("p90ResponseTime", String.valueOf(performanceDto.getP90ResponseTime()));
+        values.put("p95ResponseTime", String.valueOf(performanceDto.getP95ResponseTime()));
+        values.put("p99ResponseTime", String.valueOf(performanceDto.getP99ResponseTime()));
         return this;
     }
 
     private WikiMarkupBuilder withChanges(String changes) {
-        content = content.replace("$changes$", changes);
+        values.put("changes", changes);
         return this;
     }
 
     private WikiMarkupBuilder withRepositoryLine(String repositoryLine) {
-        content = content.replace("$repositoryLine$", repositoryLine);
+        values.put("repositoryLine", repositoryLine);
         return this;
     }
 
     public String build() {
-        return content;
+        return template.render(values);
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins;
+
+import com.intland.jenkins.collector.CodebeamerCollector;
+import com.intland.jenkins.collector.dto.BuildDto;
+import com.intland.jenkins.collector.dto.PerformanceDto;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import com.intland.jenkins.collector.dto.ScmDto;
+import com.intland.jenkins.collector.dto.TestResultDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic, realistically shaped inputs for the benchmarks.
+ */
+public class BenchmarkFixtures {
+    private static final long FIRST_BUILD_TIME = 1420070400000L;
+    private static final long BUILD_INTERVAL = 3600000L;
+
+    private static final String[] MESSAGE_TEMPLATES = {
+            "Fix NPE in the wiki updater when the page is empty #%d",
+            "Merge branch 'feature/trend-chart' into master",
+            "Bump jackson to 2.9.9, see #%d, #%d",
+            "Refactor the collectors\n\n* move the dto classes\n* drop the unused helpers\n\tsee #%d",
+            "Update README.md",
+            "Revert \"Speed up the svn lookup\" (#%d)",
+    };
+
+    public static BuildDto build(int buildNumber) {
+        return new BuildDto("1.1.6", "http://jenkins.example.com/job/trend/", "http://jenkins.example.com/job/trend/" + buildNumber + "/",
+                "12 min, 3 sec", "2015-01-01 10:00:00", String.valueOf(buildNumber), "linux-agent-3",
+                buildTime(buildNumber), 723000L);
+    }
+
+    public static PublishDataDto testReportBuild(int buildNumber, int commits) {
+        TestResultDto testResultDto = new TestResultDto("2 min, 40 sec", 4211, buildNumber % 7, 12, "+1", 160000L);
+        return new PublishDataDto(build(buildNumber), scm(commits), testResultDto, null, buildTime(buildNumber));
+    }
+
+    public static PublishDataDto performanceBuild(int buildNumber, int commits) {
+        PerformanceDto performanceDto = new PerformanceDto(120, 95, 1810, 240, 410, 980, false);
+        return new PublishDataDto(build(buildNumber), scm(commits), null, performanceDto, buildTime(buildNumber));
+    }
+
+    public static ScmDto scm(int commits) {
+        StringBuilder changes = new StringBuilder();
+        for (String message : commitMessages(commits)) {
+            changes.append("* ").append(message.replace('\n', ' ')).append(" ([USER:1042])\n");
+        }
+        return new ScmDto("[http://codebeamer.example.com/git/trend], 3f2a9c1d7e, branch: origin/master", changes.toString());
+    }
+
+    public static List<String> commitMessages(int commits) {
+        Random random = new Random(commits);
+        List<String> messages = new ArrayList<String>(commits);
+        for (int i = 0; i < commits; i++) {
+            String template = MESSAGE_TEMPLATES[i % MESSAGE_TEMPLATES.length];
+            messages.add(String.format(template, 1000 + random.nextInt(90000), 1000 + random.nextInt(90000)));
+        }
+        return messages;
+    }
+
+    /**
+     * @return a wiki page as the plugin leaves it, the chart followed by the given number of build sections
+     */
+    public static String wikiPage(int buildSections) {
+        StringBuilder page = new StringBuilder("[{JenkinsBuildTrends}]");
+        for (int i = buildSections; i > 0; i--) {
+            String markup = CodebeamerCollector.renderBuildSection(testReportBuild(i, 5), null).getMarkup();
+            page.append(markup);
+        }
+        return page.toString();
+    }
+
+    /**
+     * @return a test result trend csv, newest row first
+     */
+    public static String trendCsv(int rows) {
+        Random random = new Random(rows);
+        StringBuilder csv = new StringBuilder(rows * 40);
+        for (int i = rows; i > 0; i--) {
+            csv.append(buildTime(i)).append(';')
+                    .append(600000 + random.nextInt(300000)).append(';')
+                    .append(150000 + random.nextInt(20000)).append(';')
+                    .append(random.nextInt(10)).append(';')
+                    .append(4200 + i / 100).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static long buildTime(int buildNumber) {
+        return FIRST_BUILD_TIME + buildNumber * BUILD_INTERVAL;
+    }
+}
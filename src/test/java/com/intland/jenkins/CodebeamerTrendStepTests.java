@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins;
+
+import com.intland.jenkins.api.CircuitBreaker;
+import hudson.model.Action;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CodebeamerTrendStepTests {
+    @Test
+    public void testPublisherHasTheSettingsOfTheStep() {
+        CodebeamerTrendStep step = new CodebeamerTrendStep("https://codebeamer.example.com/cb/wiki/1001", "codebeamer");
+        step.setKeepBuildNumber(10);
+        step.setKeepTrendRows(500);
+        step.setTrendAggregation("HOURLY");
+        step.setMarkupTemplate("$build$");
+        step.setAsyncPublishing(true);
+        step.setMaxRenderedChanges(20);
+        step.setTrendSegmentRows(1000);
+        step.setLocalTrendStore(true);
+
+        PostBuildScript publisher = step.getPublisher();
+        Assert.assertEquals("https://codebeamer.example.com/cb/wiki/1001", publisher.getWikiUri());
+        Assert.assertEquals("codebeamer", publisher.getCredentialsId());
+        Assert.assertEquals(Integer.valueOf(10), publisher.getKeepBuildNumber());
+        Assert.assertEquals(Integer.valueOf(500), publisher.getKeepTrendRows());
+        Assert.assertEquals("HOURLY", publisher.getTrendAggregation());
+        Assert.assertEquals("$build$", publisher.getMarkupTemplate());
+        Assert.assertTrue(publisher.isAsyncPublishing());
+        Assert.assertEquals(Integer.valueOf(20), publisher.getMaxRenderedChanges());
+        Assert.assertEquals(Integer.valueOf(1000), publisher.getTrendSegmentRows());
+        Assert.assertTrue(publisher.isLocalTrendStore());
+    }
+
+    @Test
+    public void testInvalidUriIsSkipped() throws Exception {
+        Run run = mock(Run.class);
+        PrintStream logger = mock(PrintStream.class);
+        TaskListener listener = createListener(logger);
+
+        new CodebeamerTrendStep("https://codebeamer.example.com/cb/page/1001", "codebeamer").getPublisher().publish(run, listener);
+
+        verify(logger).println("Invalid Codebeamer URI, skipping....");
+        verify(run, never()).addAction(any(Action.class));
+    }
+
+    @Test
+    public void testPipelineBuildIsNotPublishedWhileCodebeamerIsUnavailable() throws Exception {
+        String url = "https://unavailable.example.com/cb";
+        CircuitBreaker circuitBreaker = CircuitBreaker.forUrl(url);
+        for (int i = 0; i < 20; i++) {
+            circuitBreaker.onFailure(10);
+        }
+        Run run = mock(Run.class);
+        PrintStream logger = mock(PrintStream.class);
+
+        // the Pipeline flavor of the post-build action, needs neither a workspace nor a launcher
+        new PostBuildScript(url + "/wiki/1001", "codebeamer", null).perform(run, null, null, createListener(logger));
+
+        verify(logger).println("codeBeamer at unavailable.example.com is unavailable after repeated failures, skipping publishing");
+        verify(run, never()).addAction(any(Action.class));
+    }
+
+    private static TaskListener createListener(PrintStream logger) {
+        TaskListener listener = mock(TaskListener.class);
+        when(listener.getLogger()).thenReturn(logger);
+        return listener;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.action;
+
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PublishTimingProjectActionFactoryTests {
+    private final PublishTimingProjectActionFactory factory = new PublishTimingProjectActionFactory();
+
+    @Test
+    public void testPublishedPipelineJobHasTimingPage() {
+        Job job = createJob(new PublishTimingAction());
+
+        List<Action> actions = new ArrayList<Action>(factory.createFor(job));
+        Assert.assertEquals(1, actions.size());
+        Assert.assertSame(job, ((PublishTimingProjectAction) actions.get(0)).getJob());
+    }
+
+    @Test
+    public void testJobThatWasNotPublishedHasNoTimingPage() {
+        Assert.assertTrue(factory.createFor(createJob(null)).isEmpty());
+        Assert.assertTrue(factory.createFor(mock(Job.class)).isEmpty());
+    }
+
+    @Test
+    public void testFreestyleJobGetsTimingPageFromPublisher() {
+        Assert.assertTrue(factory.createFor(mock(AbstractProject.class)).isEmpty());
+    }
+
+    private static Job createJob(PublishTimingAction timingAction) {
+        Job job = mock(Job.class);
+        Run run = mock(Run.class);
+        when(job.getLastCompletedBuild()).thenReturn(run);
+        when(run.getAction(PublishTimingAction.class)).thenReturn(timingAction);
+        return job;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.action;
+
+import com.intland.jenkins.collector.dto.TestResultDto;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSummaryActionTests {
+    @Test
+    public void testFailedTestHashesAreKept() {
+        long[] failedTestHashes = new long[TestSummaryAction.MAX_FAILED_TEST_HASHES];
+        TestSummaryAction summaryAction = new TestSummaryAction(true, createTestResultDto(failedTestHashes.length), 1000, failedTestHashes);
+
+        Assert.assertSame(failedTestHashes, summaryAction.getFailedTestHashes());
+    }
+
+    @Test
+    public void testTooManyFailedTestHashesAreNotKept() {
+        long[] failedTestHashes = new long[TestSummaryAction.MAX_FAILED_TEST_HASHES + 1];
+        TestSummaryAction summaryAction = new TestSummaryAction(true, createTestResultDto(failedTestHashes.length), 1000, failedTestHashes);
+
+        Assert.assertNull(summaryAction.getFailedTestHashes());
+        Assert.assertEquals(failedTestHashes.length, summaryAction.getFailCount());
+    }
+
+    private static TestResultDto createTestResultDto(int failCount) {
+        return new TestResultDto("", failCount, failCount, 0, "", 0);
+    }
+}
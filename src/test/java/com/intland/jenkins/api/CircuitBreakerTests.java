@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.api;
+
+import com.intland.jenkins.api.CodebeamerMetrics.Endpoint;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.StringEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class CircuitBreakerTests {
+    private static final long OPEN_MILLIS = 30000;
+
+    @Test
+    public void testCircuitOpensOnFailureRate() throws Exception {
+        CircuitBreaker breaker = createBreaker();
+        breaker.record(false, 10, 0);
+        breaker.record(true, 10, 0);
+        breaker.record(false, 10, 0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(0));
+
+        breaker.record(true, 10, 0);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(0));
+        assertRejected(breaker, 1000);
+    }
+
+    @Test
+    public void testCircuitOpensOnSlowCalls() throws Exception {
+        CircuitBreaker breaker = createBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.record(false, 5000, 0);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(0));
+    }
+
+    @Test
+    public void testSingleTrialIsLetThroughWhenHalfOpen() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+
+        breaker.acquirePermission(OPEN_MILLIS + 1);
+        assertRejected(breaker, OPEN_MILLIS + 2);
+
+        breaker.record(false, 10, OPEN_MILLIS + 3);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(OPEN_MILLIS + 3));
+        breaker.acquirePermission(OPEN_MILLIS + 4);
+    }
+
+    @Test
+    public void testFailedTrialOpensCircuitAgain() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+
+        breaker.acquirePermission(OPEN_MILLIS + 1);
+        breaker.record(true, 10, OPEN_MILLIS + 2);
+        assertRejected(breaker, OPEN_MILLIS + 3);
+        breaker.acquirePermission(2 * OPEN_MILLIS + 2);
+    }
+
+    @Test
+    public void testReleasedTrialAllowsAnotherOne() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+
+        breaker.acquirePermission(OPEN_MILLIS + 1);
+        breaker.release();
+        breaker.acquirePermission(OPEN_MILLIS + 2);
+    }
+
+    @Test
+    public void testTrialIsReleasedWhenTheClientThrows() throws Exception {
+        StubCodebeamerServer server = new StubCodebeamerServer(1);
+        server.start();
+        try {
+            CodebeamerApiClient apiClient = new CodebeamerApiClient("jenkins", "secret", server.getUrl(), "1001");
+            CircuitBreaker breaker = CircuitBreaker.forUrl(server.getUrl());
+            // opened long enough ago to be half-open now
+            long openedAt = System.currentTimeMillis() - 3600 * 1000;
+            for (int i = 0; i < 20; i++) {
+                breaker.record(true, 10, openedAt);
+            }
+
+            HttpPut put = new HttpPut(server.getUrl() + "/rest/wikipage/1001");
+            put.setEntity(new StringEntity("markup") {
+                @Override
+                public void writeTo(OutputStream outstream) throws IOException {
+                    throw new IllegalStateException("broken entity");
+                }
+            });
+            try {
+                apiClient.send(Endpoint.WIKI_PUT, put);
+                Assert.fail("The exception of the entity should have been thrown");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("broken entity", e.getMessage());
+            }
+
+            // the trial was given back, the next request may try again
+            breaker.acquirePermission();
+            breaker.release();
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRatesAreComputedOverTheLatestOutcomes() throws Exception {
+        CircuitBreaker breaker = createBreaker();
+        breaker.record(false, 10, 0);
+        breaker.record(true, 10, 0);
+        breaker.record(false, 10, 0);
+        breaker.record(false, 10, 0);
+        breaker.record(false, 10, 0);
+        breaker.record(true, 10, 0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(0));
+
+        // two of the latest four calls failed
+        breaker.record(true, 10, 0);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(0));
+    }
+
+    private static CircuitBreaker createBreaker() {
+        return new CircuitBreaker("codebeamer", 4, 4, 50, 75, 5000, OPEN_MILLIS);
+    }
+
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = createBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.record(true, 10, 0);
+        }
+        return breaker;
+    }
+
+    private static void assertRejected(CircuitBreaker breaker, long now) {
+        try {
+            breaker.acquirePermission(now);
+            Assert.fail("Request should have been rejected");
+        } catch (CircuitOpenException e) {
+            Assert.assertTrue(e.getMessage().contains("codebeamer"));
+        }
+    }
+}
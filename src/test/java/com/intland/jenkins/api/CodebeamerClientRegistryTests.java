@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+
+public class CodebeamerClientRegistryTests {
+    @Test
+    public void testAttachmentUpdatesLeaveConnectionsOfTheRoute() {
+        Semaphore permits = CodebeamerClientRegistry.getAttachmentUpdatePermits("http://codebeamer.example.com/cb", "jenkins", "secret");
+
+        // two connections each, one of the five connections of the route is left
+        Assert.assertEquals(2, permits.availablePermits());
+        Assert.assertSame(permits, CodebeamerClientRegistry.getAttachmentUpdatePermits("http://codebeamer.example.com/cb", "jenkins", "secret"));
+        Assert.assertNotSame(permits, CodebeamerClientRegistry.getAttachmentUpdatePermits("http://codebeamer.example.com/cb", "other", "secret"));
+    }
+}
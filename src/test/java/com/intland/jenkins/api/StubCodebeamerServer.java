@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the parts of the codeBeamer REST api the plugin talks to. Pages, attachments, users and
+ * repositories are kept in memory. Every response can be delayed and a share of the requests answered with 503.
+ */
+public class StubCodebeamerServer {
+    private static final Pattern WIKI_PAGE = Pattern.compile("/rest/wikipage/(\\d+)");
+    private static final Pattern WIKI_PAGE_ATTACHMENTS = Pattern.compile("/rest/wikipage/(\\d+)/attachments");
+    private static final Pattern ATTACHMENT_CONTENT = Pattern.compile("/rest/attachment/(\\d+)/content");
+    private static final Pattern USER = Pattern.compile("/rest/user/(.+)");
+    private static final Pattern REPOSITORY = Pattern.compile("/(git|svn)/(.+)");
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+    private static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]*)\"");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Page> pages = new HashMap<String, Page>();
+    private final Map<String, Attachment> attachments = new LinkedHashMap<String, Attachment>();
+    private final Map<String, String> users = new HashMap<String, String>();
+    private final Map<String, String> repositories = new HashMap<String, String>();
+    private final AtomicInteger nextId = new AtomicInteger(1000);
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public StubCodebeamerServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return String.format("http://%s:%d", server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    public StubCodebeamerServer withLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public StubCodebeamerServer withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public synchronized StubCodebeamerServer withPage(String wikiId, String markup) {
+        pages.put(wikiId, new Page(markup));
+        return this;
+    }
+
+    public synchronized StubCodebeamerServer withUser(String name, String userId) {
+        users.put(name, userId);
+        return this;
+    }
+
+    public synchronized StubCodebeamerServer withRepository(String scmType, String name, String repositoryId) {
+        repositories.put(scmType + "/" + name, repositoryId);
+        return this;
+    }
+
+    public synchronized String getMarkup(String wikiId) {
+        Page page = pages.get(wikiId);
+        return page == null ? null : page.markup;
+    }
+
+    public synchronized int getPageVersion(String wikiId) {
+        Page page = pages.get(wikiId);
+        return page == null ? 0 : page.version;
+    }
+
+    public synchronized String getAttachmentContent(String wikiId, String name) {
+        Attachment attachment = findAttachment(wikiId, name);
+        return attachment == null ? null : new String(attachment.content, StandardCharsets.UTF_8);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        byte[] requestBody = IOUtils.toByteArray(exchange.getRequestBody());
+        bytesReceived.addAndGet(requestBody.length);
+
+        long latency = latencyMillis;
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            respond(exchange, 503, null);
+            return;
+        }
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Matcher matcher;
+
+        if ("GET".equals(method) && (matcher = WIKI_PAGE_ATTACHMENTS.matcher(path)).matches()) {
+            respondJson(exchange, 200, listAttachments(matcher.group(1)));
+        } else if ("GET".equals(method) && (matcher = WIKI_PAGE.matcher(path)).matches()) {
+            getPage(exchange, matcher.group(1));
+        } else if ("PUT".equals(method) && "/rest/wikipage".equals(path)) {
+            updatePage(exchange, requestBody);
+        } else if ("GET".equals(method) && (matcher = ATTACHMENT_CONTENT.matcher(path)).matches()) {
+            byte[] content = getAttachmentContent(matcher.group(1));
+            respond(exchange, content == null ? 404 : 200, content);
+        } else if (("POST".equals(method) || "PUT".equals(method)) && "/rest/attachment".equals(path)) {
+            storeAttachment(exchange, requestBody);
+        } else if ("GET".equals(method) && (matcher = USER.matcher(path)).matches()) {
+            String userId = getUserId(matcher.group(1));
+            respondJson(exchange, userId == null ? 404 : 200, userId == null ? null : uri("/user/" + userId));
+        } else if ("GET".equals(method) && (matcher = REPOSITORY.matcher(path)).matches()) {
+            String repositoryId = getRepositoryId(matcher.group(1) + "/" + matcher.group(2));
+            respondJson(exchange, repositoryId == null ? 404 : 200, repositoryId == null ? null : uri("/scm/" + repositoryId));
+        } else {
+            respond(exchange, 404, null);
+        }
+    }
+
+    private void getPage(HttpExchange exchange, String wikiId) throws IOException {
+        String markup;
+        int version;
+        synchronized (this) {
+            Page page = pages.get(wikiId);
+            if (page == null) {
+                respond(exchange, 404, null);
+                return;
+            }
+            markup = page.markup;
+            version = page.version;
+        }
+
+        String etag = "\"" + version + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            respond(exchange, 304, null);
+            return;
+        }
+        respondJson(exchange, 200, markup(wikiId, markup, version));
+    }
+
+    private void updatePage(HttpExchange exchange, byte[] requestBody) throws IOException {
+        Map<?, ?> json = objectMapper.readValue(requestBody, Map.class);
+        String wikiId = lastSegment((String) json.get("uri"));
+        String markup = (String) json.get("markup");
+
+        int version;
+        synchronized (this) {
+            Page page = pages.get(wikiId);
+            if (page == null) {
+                respond(exchange, 404, null);
+                return;
+            }
+            page.markup = markup;
+            version = ++page.version;
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + version + "\"");
+        respondJson(exchange, 200, markup(wikiId, markup, version));
+    }
+
+    private void storeAttachment(HttpExchange exchange, byte[] requestBody) throws IOException {
+        Map<String, byte[]> parts = parseMultipart(exchange.getRequestHeaders().getFirst("Content-Type"), requestBody);
+        byte[] body = parts.remove("body");
+        if (body == null || parts.size() != 1) {
+            respond(exchange, 400, null);
+            return;
+        }
+        Map<?, ?> json = objectMapper.readValue(body, Map.class);
+        Map.Entry<String, byte[]> file = parts.entrySet().iterator().next();
+
+        synchronized (this) {
+            if (json.get("uri") != null) {
+                Attachment attachment = attachments.get(lastSegment((String) json.get("uri")));
+                if (attachment == null) {
+                    respond(exchange, 404, null);
+                    return;
+                }
+                attachment.content = file.getValue();
+            } else {
+                String id = String.valueOf(nextId.incrementAndGet());
+                attachments.put(id, new Attachment(lastSegment((String) json.get("parent")), (String) json.get("name"), file.getValue()));
+            }
+        }
+        respond(exchange, 200, null);
+    }
+
+    private synchronized List<Map<String, String>> listAttachments(String wikiId) {
+        List<Map<String, String>> result = new ArrayList<Map<String, String>>();
+        for (Map.Entry<String, Attachment> entry : attachments.entrySet()) {
+            if (entry.getValue().wikiId.equals(wikiId)) {
+                Map<String, String> attachment = uri("/attachment/" + entry.getKey());
+                attachment.put("name", entry.getValue().name);
+                result.add(attachment);
+            }
+        }
+        return result;
+    }
+
+    private synchronized byte[] getAttachmentContent(String id) {
+        Attachment attachment = attachments.get(id);
+        return attachment == null ? null : attachment.content;
+    }
+
+    private synchronized String getUserId(String name) {
+        return users.get(name);
+    }
+
+    private synchronized String getRepositoryId(String key) {
+        return repositories.get(key);
+    }
+
+    private Attachment findAttachment(String wikiId, String name) {
+        for (Attachment attachment : attachments.values()) {
+            if (attachment.wikiId.equals(wikiId) && attachment.name.equals(name)) {
+                return attachment;
+            }
+        }
+        return null;
+    }
+
+    private void respondJson(HttpExchange exchange, int statusCode, Object json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        respond(exchange, statusCode, json == null ? null : objectMapper.writeValueAsBytes(json));
+    }
+
+    private void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(statusCode, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(statusCode, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+        bytesSent.addAndGet(body.length);
+    }
+
+    private static Map<String, byte[]> parseMultipart(String contentType, byte[] requestBody) {
+        Map<String, byte[]> parts = new HashMap<String, byte[]>();
+        Matcher boundaryMatcher = contentType == null ? null : BOUNDARY.matcher(contentType);
+        if (boundaryMatcher == null || !boundaryMatcher.find()) {
+            return parts;
+        }
+
+        // ISO-8859-1 maps bytes one to one, so the part contents survive the round trip
+        String body = new String(requestBody, StandardCharsets.ISO_8859_1);
+        String delimiter = "--" + boundaryMatcher.group(1);
+        int start = body.indexOf(delimiter);
+        while (start != -1) {
+            int headersStart = start + delimiter.length();
+            if (body.startsWith("--", headersStart)) {
+                break;
+            }
+            int contentStart = body.indexOf("\r\n\r\n", headersStart);
+            int next = body.indexOf("\r\n" + delimiter, contentStart);
+            if (contentStart == -1 || next == -1) {
+                break;
+            }
+
+            Matcher nameMatcher = PART_NAME.matcher(body.substring(headersStart, contentStart));
+            if (nameMatcher.find()) {
+                parts.put(nameMatcher.group(1), body.substring(contentStart + 4, next).getBytes(StandardCharsets.ISO_8859_1));
+            }
+            start = next + 2;
+        }
+        return parts;
+    }
+
+    private static Map<String, Object> markup(String wikiId, String markup, int version) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("uri", "/wikipage/" + wikiId);
+        result.put("markup", markup);
+        result.put("version", String.valueOf(version));
+        return result;
+    }
+
+    private static Map<String, String> uri(String uri) {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put("uri", uri);
+        return result;
+    }
+
+    private static String lastSegment(String uri) {
+        return uri == null ? "" : uri.substring(uri.lastIndexOf('/') + 1);
+    }
+
+    private static class Page {
+        private String markup;
+        private int version = 1;
+
+        private Page(String markup) {
+            this.markup = markup;
+        }
+    }
+
+    private static class Attachment {
+        private final String wikiId;
+        private final String name;
+        private byte[] content;
+
+        private Attachment(String wikiId, String name, byte[] content) {
+            this.wikiId = wikiId;
+            this.name = name;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserIdCacheTests {
+    @Test
+    public void testFoundAndNotFoundAuthorsAreCached() {
+        UserIdCache cache = new UserIdCache(10, 60000, 60000);
+        cache.put("admin", "1");
+        cache.put("jenkins-bot", null);
+
+        Assert.assertEquals("1", cache.getIfPresent("admin").getUserId());
+        Assert.assertNull(cache.getIfPresent("jenkins-bot").getUserId());
+        Assert.assertNull(cache.getIfPresent("unknown"));
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getNotFoundHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAuthorIsEvicted() {
+        UserIdCache cache = new UserIdCache(2, 60000, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.getIfPresent("a");
+        cache.put("c", "3");
+
+        Assert.assertNotNull(cache.getIfPresent("a"));
+        Assert.assertNull(cache.getIfPresent("b"));
+        Assert.assertNotNull(cache.getIfPresent("c"));
+    }
+
+    @Test
+    public void testExpiredEntriesAreLookedUpAgain() {
+        UserIdCache cache = new UserIdCache(10, 60000, 0);
+        cache.put("jenkins-bot", null);
+
+        Assert.assertNull(cache.getIfPresent("jenkins-bot"));
+        Assert.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.collector;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per changeset should stay flat as the number of commits grows, rendering is a single pass over the messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChangeLogBenchmark {
+    private static final int AUTHORS = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int commits;
+
+    private List<ScmDataCollector.Change> changes;
+    private List<String> commitMessages;
+    private Map<String, String> userIds;
+
+    @Setup
+    public void setUp() {
+        commitMessages = BenchmarkFixtures.commitMessages(commits);
+        changes = new ArrayList<ScmDataCollector.Change>(commits);
+        for (int i = 0; i < commits; i++) {
+            changes.add(new ScmDataCollector.Change("author" + (i % AUTHORS), commitMessages.get(i)));
+        }
+        userIds = new HashMap<String, String>();
+        for (int i = 0; i < AUTHORS / 2; i++) {
+            userIds.put("author" + i, String.valueOf(2000 + i));
+        }
+    }
+
+    @Benchmark
+    public String renderChanges() {
+        return ScmDataCollector.renderChanges(changes, userIds);
+    }
+
+    @Benchmark
+    public void appendCommitMessage(Blackhole blackhole) {
+        for (String commitMessage : commitMessages) {
+            StringBuilder result = new StringBuilder(commitMessage.length() + 32);
+            ScmDataCollector.appendCommitMessage(result, commitMessage);
+            blackhole.consume(result);
+        }
+    }
+}
@@ -72,6 +72,7 @@ public class CodebeamerCollectorTests {
 
         when(Jenkins.getInstance()).thenReturn(jenkins);
         when(build.getProject()).thenReturn(project);
+        when(build.getParent()).thenReturn(project);
         when(project.getParent()).thenReturn(projectParent);
         when(jenkins.getPlugin(anyString())).thenReturn(plugin);
         when(plugin.getWrapper()).thenReturn(pluginWrapper);
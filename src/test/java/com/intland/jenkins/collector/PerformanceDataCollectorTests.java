@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.collector;
+
+import com.intland.jenkins.collector.dto.PerformanceDto;
+import hudson.model.Run;
+import hudson.plugins.performance.HttpSample;
+import hudson.plugins.performance.PerformanceBuildAction;
+import hudson.plugins.performance.PerformanceReport;
+import hudson.plugins.performance.PerformanceReportMap;
+import hudson.plugins.performance.UriReport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PerformanceDataCollectorTests {
+    @Test
+    public void testSamplesOfAllReportsAreCombined() {
+        // 10, 20, ... 1000 ms in one report, five slow samples of 2000 ms in another
+        List<Long> fastDurations = new ArrayList<Long>();
+        for (int i = 1; i <= 100; i++) {
+            fastDurations.add(i * 10L);
+        }
+        Map<String, PerformanceReport> reports = new LinkedHashMap<String, PerformanceReport>();
+        reports.put("fast.jtl", createReport(fastDurations, 0));
+        reports.put("slow.jtl", createReport(Collections.nCopies(5, 2000L), 1));
+
+        PerformanceDto performanceDto = PerformanceDataCollector.collectPerformanceDto(createBuild(reports));
+
+        // (50500 + 10000) / 105 samples, not the average of the means of the reports
+        Assert.assertEquals(576, performanceDto.getAverageResponseTime());
+        Assert.assertEquals(2000, performanceDto.getMaximumResponseTime());
+        // the upper bounds of the buckets of the 53rd, 95th, 100th and 104th sample
+        Assert.assertEquals(543, performanceDto.getMedianResponseTime());
+        Assert.assertEquals(959, performanceDto.getP90ResponseTime());
+        Assert.assertEquals(1023, performanceDto.getP95ResponseTime());
+        Assert.assertEquals(2000, performanceDto.getP99ResponseTime());
+        Assert.assertTrue(performanceDto.isFailed());
+    }
+
+    @Test
+    public void testBuildWithoutSamples() {
+        Map<String, PerformanceReport> reports = new LinkedHashMap<String, PerformanceReport>();
+        reports.put("empty.jtl", createReport(Collections.<Long>emptyList(), 0));
+
+        PerformanceDto performanceDto = PerformanceDataCollector.collectPerformanceDto(createBuild(reports));
+
+        Assert.assertEquals(0, performanceDto.getAverageResponseTime());
+        Assert.assertEquals(0, performanceDto.getP99ResponseTime());
+        Assert.assertFalse(performanceDto.isFailed());
+    }
+
+    private static Run<?, ?> createBuild(Map<String, PerformanceReport> reports) {
+        Run<?, ?> build = mock(Run.class);
+        PerformanceBuildAction performanceBuildAction = mock(PerformanceBuildAction.class);
+        PerformanceReportMap performanceReportMap = mock(PerformanceReportMap.class);
+        when(build.getAction(PerformanceBuildAction.class)).thenReturn(performanceBuildAction);
+        when(performanceBuildAction.getPerformanceReportMap()).thenReturn(performanceReportMap);
+        when(performanceReportMap.getPerformanceReportMap()).thenReturn(reports);
+        return build;
+    }
+
+    private static PerformanceReport createReport(List<Long> durations, int errors) {
+        List<HttpSample> samples = new ArrayList<HttpSample>();
+        for (Long duration : durations) {
+            HttpSample sample = mock(HttpSample.class);
+            when(sample.getDuration()).thenReturn(duration);
+            samples.add(sample);
+        }
+        UriReport uriReport = mock(UriReport.class);
+        when(uriReport.getHttpSampleList()).thenReturn(samples);
+
+        PerformanceReport performanceReport = mock(PerformanceReport.class);
+        when(performanceReport.getUriReportMap()).thenReturn(Collections.singletonMap("/", uriReport));
+        when(performanceReport.countErrors()).thenReturn(errors);
+        return performanceReport;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.collector;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import hudson.scm.ChangeLogSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ScmDataCollectorTests {
+    @Test
+    public void testMessageIsEscaped() {
+        Assert.assertEquals("first line  \\\\* bullet second line", render("  first line\n* bullet\tsecond\tline\n"));
+    }
+
+    @Test
+    public void testTaskIdsAreLinked() {
+        Assert.assertEquals("[#1234|ISSUE:1234] fixed, see [#5678,9012 3456|ISSUE:5678,9012 3456].", render("#1234 fixed, see #5678,9012 3456."));
+    }
+
+    @Test
+    public void testTaskIdFollowedByAsteriskIsLinked() {
+        Assert.assertEquals("[#1000|ISSUE:1000]  \\\\* bullet", render("#1000\n* bullet"));
+        Assert.assertEquals("[#1000|ISSUE:1000] \\\\*", render("#1000*"));
+    }
+
+    @Test
+    public void testOverlappingTaskIdsAreLinkedOnce() {
+        Assert.assertEquals("[#1234|ISSUE:1234] and [#12345|ISSUE:12345]", render("#1234 and #12345"));
+        Assert.assertEquals("[#1234|ISSUE:1234] but not #1234abc", render("#1234 but not #1234abc"));
+    }
+
+    @Test
+    public void testShortAndPrefixedNumbersAreNotLinked() {
+        Assert.assertEquals("#123 #0123 a#1234b", render("#123 #0123 a#1234b"));
+    }
+
+    @Test
+    public void testChangesAreRenderedWithResolvedUsers() {
+        Map<String, String> userIds = new HashMap<String, String>();
+        userIds.put("admin", "1");
+
+        String changes = ScmDataCollector.renderChanges(Arrays.asList(
+                new ScmDataCollector.Change("admin", "#1000 first"),
+                new ScmDataCollector.Change("guest", "second")), userIds);
+
+        Assert.assertEquals("* [#1000|ISSUE:1000] first ([USER:1])\n* second (guest)\n", changes);
+    }
+
+    @Test
+    public void testNoChanges() {
+        Assert.assertEquals("", ScmDataCollector.renderChanges(Collections.<ScmDataCollector.Change>emptyList(),
+                Collections.<String, String>emptyMap()));
+    }
+
+    @Test
+    public void testOmittedChangesAreSummarized() {
+        String url = "http://jenkins.example.com/job/trend/12/changes";
+        Assert.assertEquals("* [and 1 more commit|" + url + "] by alice\n",
+                ScmDataCollector.renderOmittedChanges(1, Collections.singletonList("alice"), url));
+        Assert.assertEquals("* [and 120 more commits|" + url + "] by alice, bob, carol\n",
+                ScmDataCollector.renderOmittedChanges(120, Arrays.asList("alice", "bob", "carol"), url));
+        Assert.assertEquals("* [and 120 more commits|" + url + "] by alice, bob, carol and 2 others\n",
+                ScmDataCollector.renderOmittedChanges(120, Arrays.asList("alice", "bob", "carol", "dave", "erin"), url));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangeSetOfFreestyleBuildIsRead() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        ChangeLogSet<ChangeLogSet.Entry> changeSet = mock(ChangeLogSet.class);
+        when(build.getChangeSet()).thenReturn(changeSet);
+
+        Assert.assertEquals(Collections.singletonList(changeSet), ScmDataCollector.getChangeSets(build));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangeSetsOfPipelineBuildAreRead() {
+        PipelineRun run = mock(PipelineRun.class);
+        ChangeLogSet<ChangeLogSet.Entry> first = mock(ChangeLogSet.class);
+        ChangeLogSet<ChangeLogSet.Entry> second = mock(ChangeLogSet.class);
+        List<ChangeLogSet<? extends ChangeLogSet.Entry>> changeSets = Arrays.<ChangeLogSet<? extends ChangeLogSet.Entry>>asList(first, second);
+        when(run.getChangeSets()).thenReturn(changeSets);
+
+        Assert.assertEquals(changeSets, ScmDataCollector.getChangeSets(run));
+    }
+
+    @Test
+    public void testBuildWithoutChangeSetsHasNoChanges() {
+        Assert.assertTrue(ScmDataCollector.getChangeSets(mock(Run.class)).isEmpty());
+    }
+
+    private static String render(String message) {
+        StringBuilder result = new StringBuilder();
+        ScmDataCollector.appendCommitMessage(result, message);
+        return result.toString();
+    }
+
+    /**
+     * Has the method of <code>WorkflowRun</code> the changes are read through.
+     */
+    @SuppressWarnings("rawtypes")
+    public abstract static class PipelineRun extends Run {
+        protected PipelineRun() throws IOException {
+            super(null);
+        }
+
+        public abstract List<ChangeLogSet<? extends ChangeLogSet.Entry>> getChangeSets();
+    }
+}
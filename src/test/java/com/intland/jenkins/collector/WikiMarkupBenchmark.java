@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.collector;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.collector.dto.CodebeamerDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WikiMarkupBenchmark {
+    @Param({"50", "500", "5000"})
+    public int buildSections;
+
+    private String page;
+    private String pageWithoutChart;
+    private CodebeamerDto buildSection;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkFixtures.wikiPage(buildSections);
+        pageWithoutChart = page.substring("[{JenkinsBuildTrends}]".length()).replace("}]", ")");
+        buildSection = CodebeamerCollector.renderBuildSection(BenchmarkFixtures.testReportBuild(buildSections + 1, 20), null);
+    }
+
+    @Benchmark
+    public String truncateWikiMarkup() {
+        return CodebeamerCollector.truncateWikiMarkup(page, 50);
+    }
+
+    @Benchmark
+    public String insertChartIntoPageWithChart() {
+        return CodebeamerCollector.insertChartIfNoPluginPresent(page, "[{JenkinsBuildTrends}]");
+    }
+
+    @Benchmark
+    public String insertChartIntoPageWithoutChart() {
+        return CodebeamerCollector.insertChartIfNoPluginPresent(pageWithoutChart, "[{JenkinsBuildTrends}]");
+    }
+
+    @Benchmark
+    public String mergeBuildSection() {
+        return CodebeamerCollector.mergeBuildSection(page, buildSection, 50);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.publish;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.action.PublishStatusAction;
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.api.CodebeamerApiClient;
+import com.intland.jenkins.api.StubCodebeamerServer;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+public class CodebeamerPublisherTests {
+    private static final String WIKI_ID = "1001";
+    private static final String ATTACHMENT_NAME = "jenkinsbuildtrends.csv";
+
+    private StubCodebeamerServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubCodebeamerServer(4).withPage(WIKI_ID, BenchmarkFixtures.wikiPage(3));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testBatchIsPublishedInBuildOrder() throws Exception {
+        int pageVersion = server.getPageVersion(WIKI_ID);
+        WikiPageQueue.PendingJob newer = createPendingJob(5);
+        WikiPageQueue.PendingJob older = createPendingJob(4);
+
+        CodebeamerPublisher.publishBatch(Arrays.asList(newer, older));
+
+        newer.result.get();
+        older.result.get();
+        Assert.assertEquals(PublishStatusAction.Status.PUBLISHED, newer.job.getStatusAction().getStatus());
+        Assert.assertEquals(PublishStatusAction.Status.PUBLISHED, older.job.getStatusAction().getStatus());
+        // a single update of the page for both builds
+        Assert.assertEquals(pageVersion + 1, server.getPageVersion(WIKI_ID));
+
+        String markup = server.getMarkup(WIKI_ID);
+        int newerSection = markup.indexOf(newer.job.getPublishDataDto().getBuildDto().getBuildUrl() + "testReport/");
+        int olderSection = markup.indexOf(older.job.getPublishDataDto().getBuildDto().getBuildUrl() + "testReport/");
+        Assert.assertTrue(newerSection >= 0 && olderSection > newerSection);
+
+        String csv = server.getAttachmentContent(WIKI_ID, ATTACHMENT_NAME);
+        Assert.assertTrue(csv.startsWith(newer.job.getPublishDataDto().getCurrentTime() + ";"));
+        Assert.assertTrue(csv.contains("\n" + older.job.getPublishDataDto().getCurrentTime() + ";"));
+    }
+
+    @Test
+    public void testEveryJobFailsWhenThePageCannotBeRead() throws Exception {
+        WikiPageQueue.PendingJob first = createPendingJob(4);
+        WikiPageQueue.PendingJob second = createPendingJob(5);
+        server.withErrorRate(1.0);
+
+        CodebeamerPublisher.publishBatch(Arrays.asList(first, second));
+
+        for (WikiPageQueue.PendingJob pendingJob : Arrays.asList(first, second)) {
+            Assert.assertTrue(pendingJob.result.isDone());
+            try {
+                pendingJob.result.get();
+                Assert.fail("publishing should have failed");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(PublishStatusAction.Status.FAILED, pendingJob.job.getStatusAction().getStatus());
+            }
+        }
+        Assert.assertNull(server.getAttachmentContent(WIKI_ID, ATTACHMENT_NAME));
+    }
+
+    private WikiPageQueue.PendingJob createPendingJob(int buildNumber) {
+        CodebeamerApiClient apiClient = new CodebeamerApiClient("jenkins", "secret", server.getUrl(), WIKI_ID);
+        PublishDataDto publishDataDto = BenchmarkFixtures.testReportBuild(buildNumber, 3);
+        PublishJob job = new PublishJob(apiClient, server.getUrl(), WIKI_ID, null, null, null, null, null, publishDataDto,
+                new PublishStatusAction(server.getUrl() + "/wiki/" + WIKI_ID), new PublishTimingAction());
+        return new WikiPageQueue.PendingJob(job, new PrintStream(new NullOutputStream()));
+    }
+}
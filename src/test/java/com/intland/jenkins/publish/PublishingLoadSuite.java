@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.publish;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.action.PublishStatusAction;
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.api.CodebeamerApiClient;
+import com.intland.jenkins.api.StubCodebeamerServer;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import com.intland.jenkins.util.TrendSegmentManifest;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a number of simulated builds concurrently against {@link StubCodebeamerServer} and reports throughput,
+ * latency percentiles, bytes transferred and the builds missing from the page or the trend csv afterwards.
+ *
+ * Every simulated build makes the calls the collectors make against codeBeamer (repository and author lookups),
+ * the collected data itself comes from {@link BenchmarkFixtures} since there is no Jenkins build behind it.
+ *
+ * <pre>mvn -P load verify -DskipTests -Dload.builds=500 -Dload.concurrency=32 -Dload.latency=20 -Dload.errorRate=0.01</pre>
+ * Add <code>-Dload.segmentRows=100</code> to publish the trend csv in segments, <code>-Dload.trendStore=true</code>
+ * to generate it from a local trend store in a temporary directory.
+ */
+public class PublishingLoadSuite {
+    private static final String WIKI_ID = "1001";
+    private static final String ATTACHMENT_NAME = "jenkinsbuildtrends.csv";
+    private static final int AUTHORS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int builds = Integer.getInteger("load.builds", 200);
+        int concurrency = Integer.getInteger("load.concurrency", 16);
+        int pageSections = Integer.getInteger("load.pageSections", 500);
+        int commits = Integer.getInteger("load.commits", 20);
+        long latency = Long.getLong("load.latency", 10L);
+        double errorRate = Double.parseDouble(System.getProperty("load.errorRate", "0"));
+        Integer segmentRows = Integer.getInteger("load.segmentRows");
+        File trendStoreDirectory = Boolean.getBoolean("load.trendStore") ? Files.createTempDirectory("trend-store").toFile() : null;
+
+        StubCodebeamerServer server = new StubCodebeamerServer(concurrency * 2)
+                .withLatency(latency)
+                .withErrorRate(errorRate)
+                .withPage(WIKI_ID, BenchmarkFixtures.wikiPage(pageSections))
+                .withRepository("git", "trend.git", "12");
+        for (int i = 0; i < AUTHORS; i++) {
+            server.withUser("author" + i, String.valueOf(2000 + i));
+        }
+        server.start();
+
+        ExecutorService builders = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            List<PublishDataDto> publishData = new ArrayList<PublishDataDto>();
+            long start = System.nanoTime();
+            for (int i = 0; i < builds; i++) {
+                PublishDataDto dataDto = BenchmarkFixtures.testReportBuild(pageSections + 1 + i, commits);
+                publishData.add(dataDto);
+                results.add(builders.submit(new SimulatedBuild(server.getUrl(), dataDto, pageSections + builds + 1, segmentRows,
+                        trendStoreDirectory)));
+            }
+
+            List<Long> latencies = new ArrayList<Long>();
+            List<PublishDataDto> published = new ArrayList<PublishDataDto>();
+            int failed = 0;
+            for (int i = 0; i < builds; i++) {
+                try {
+                    latencies.add(results.get(i).get());
+                    published.add(publishData.get(i));
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            report(server, builds, concurrency, elapsed, latencies, failed, published);
+        } finally {
+            builders.shutdownNow();
+            server.stop();
+        }
+    }
+
+    private static void report(StubCodebeamerServer server, int builds, int concurrency, long elapsedNanos, List<Long> latencies,
+                               int failed, List<PublishDataDto> published) {
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        String markup = server.getMarkup(WIKI_ID);
+        String csv = getTrendCsv(server);
+        int lostSections = 0;
+        int lostRows = 0;
+        for (PublishDataDto dataDto : published) {
+            if (!markup.contains("|" + dataDto.getBuildDto().getBuildUrl() + "testReport/]")) {
+                lostSections++;
+            }
+            if (csv == null || !(csv.startsWith(dataDto.getCurrentTime() + ";") || csv.contains("\n" + dataDto.getCurrentTime() + ";"))) {
+                lostRows++;
+            }
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format(Locale.ROOT, "builds: %d, concurrency: %d, published: %d, failed: %d",
+                builds, concurrency, published.size(), failed));
+        System.out.println(String.format(Locale.ROOT, "elapsed: %.2f s, throughput: %.1f builds/s", seconds, builds / seconds));
+        System.out.println(String.format(Locale.ROOT, "latency ms p50: %d, p90: %d, p99: %d, max: %d",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        System.out.println(String.format(Locale.ROOT, "requests: %d (%.1f per build), injected errors: %d, page versions: %d",
+                server.getRequests(), server.getRequests() / (double) builds, server.getInjectedErrors(), server.getPageVersion(WIKI_ID)));
+        System.out.println(String.format(Locale.ROOT, "bytes received: %d (%.1f KB per build), sent: %d (%.1f KB per build)",
+                server.getBytesReceived(), server.getBytesReceived() / 1024.0 / builds,
+                server.getBytesSent(), server.getBytesSent() / 1024.0 / builds));
+        System.out.println(String.format(Locale.ROOT, "lost updates, wiki sections: %d, trend rows: %d", lostSections, lostRows));
+    }
+
+    /**
+     * @return the trend csv, the segments concatenated when it is segmented
+     */
+    private static String getTrendCsv(StubCodebeamerServer server) {
+        String manifest = server.getAttachmentContent(WIKI_ID, TrendSegmentManifest.getManifestName(ATTACHMENT_NAME));
+        if (manifest == null) {
+            return server.getAttachmentContent(WIKI_ID, ATTACHMENT_NAME);
+        }
+
+        StringBuilder csv = new StringBuilder();
+        for (TrendSegmentManifest.Segment segment : TrendSegmentManifest.parse(ATTACHMENT_NAME, manifest).getSegments()) {
+            String content = server.getAttachmentContent(WIKI_ID, segment.getName());
+            if (content != null) {
+                csv.append(content);
+            }
+        }
+        return csv.toString();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static class SimulatedBuild implements Callable<Long> {
+        private final String url;
+        private final PublishDataDto publishDataDto;
+        private final int keepBuildNumber;
+        private final Integer segmentRows;
+        private final File trendStoreDirectory;
+
+        private SimulatedBuild(String url, PublishDataDto publishDataDto, int keepBuildNumber, Integer segmentRows,
+                               File trendStoreDirectory) {
+            this.url = url;
+            this.publishDataDto = publishDataDto;
+            this.keepBuildNumber = keepBuildNumber;
+            this.segmentRows = segmentRows;
+            this.trendStoreDirectory = trendStoreDirectory;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            long start = System.nanoTime();
+            CodebeamerApiClient apiClient = new CodebeamerApiClient("jenkins", "secret", url, WIKI_ID);
+
+            // what the scm collector asks codeBeamer for, two of the authors are unknown to codeBeamer
+            apiClient.getCodeBeamerRepoUrlForGit("https://github.com/example/trend.git");
+            int buildNumber = Integer.parseInt(publishDataDto.getBuildDto().getBuildNumber());
+            for (int i = 0; i < 3; i++) {
+                apiClient.getUserId("author" + ((buildNumber + i) % (AUTHORS + 2)));
+            }
+
+            PublishJob job = new PublishJob(apiClient, url, WIKI_ID, keepBuildNumber, null, null, segmentRows, trendStoreDirectory,
+                    publishDataDto, new PublishStatusAction(url + "/wiki/" + WIKI_ID), new PublishTimingAction());
+            CodebeamerPublisher.publish(job, new PrintStream(new NullOutputStream()));
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.publish;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.action.PublishStatusAction;
+import com.intland.jenkins.action.PublishTimingAction;
+import com.intland.jenkins.api.CodebeamerApiClient;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WikiPageQueueTests {
+    private static final String URL = "http://codebeamer.example.com/cb";
+    private static final String WIKI_ID = "1001";
+    private static final PrintStream NO_LOG = new PrintStream(new NullOutputStream());
+
+    @Test
+    public void testWaitingBuildDoesNotPublishOnItsThread() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingPublisher publisher = new RecordingPublisher();
+        final WikiPageQueue queue = new WikiPageQueue(executor, publisher);
+        final PublishJob job = createJob("jenkins", 1);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread build = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.publishAndWait(job, NO_LOG);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        build.start();
+
+        executor.runNext();
+        build.join(5000);
+        Assert.assertFalse(build.isAlive());
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(Collections.singletonList(Thread.currentThread()), publisher.threads);
+    }
+
+    @Test
+    public void testQueuedBuildsArePublishedTogether() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingPublisher publisher = new RecordingPublisher();
+        WikiPageQueue queue = new WikiPageQueue(executor, publisher);
+
+        Future<Void> first = queue.enqueueAsync(createJob("jenkins", 1), NO_LOG);
+        Future<Void> second = queue.enqueueAsync(createJob("jenkins", 2), NO_LOG);
+        executor.runNext();
+
+        Assert.assertTrue(first.isDone());
+        Assert.assertTrue(second.isDone());
+        Assert.assertEquals(1, publisher.batches.size());
+        Assert.assertEquals(2, publisher.batches.get(0).size());
+        Assert.assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void testBuildsWithOtherCredentialsArePublishedSeparately() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingPublisher publisher = new RecordingPublisher();
+        WikiPageQueue queue = new WikiPageQueue(executor, publisher);
+
+        PublishJob first = createJob("jenkins", 1);
+        PublishJob other = createJob("someone-else", 2);
+        PublishJob third = createJob("jenkins", 3);
+        queue.enqueueAsync(first, NO_LOG);
+        queue.enqueueAsync(other, NO_LOG);
+        queue.enqueueAsync(third, NO_LOG);
+
+        // one batch per run, the rest is handed back to the pool
+        executor.runNext();
+        executor.runNext();
+
+        Assert.assertEquals(2, publisher.batches.size());
+        Assert.assertEquals(2, publisher.batches.get(0).size());
+        Assert.assertSame(first, publisher.batches.get(0).get(0).job);
+        Assert.assertSame(third, publisher.batches.get(0).get(1).job);
+        Assert.assertSame(other, publisher.batches.get(1).get(0).job);
+        Assert.assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void testAsyncJobIsNotQueuedWhenPoolIsFull() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        executor.rejecting = true;
+        RecordingPublisher publisher = new RecordingPublisher();
+        WikiPageQueue queue = new WikiPageQueue(executor, publisher);
+
+        Assert.assertNull(queue.enqueueAsync(createJob("jenkins", 1), NO_LOG));
+
+        // the rejected job is not published along with the next one
+        queue.publishAndWait(createJob("jenkins", 2), NO_LOG);
+        Assert.assertEquals(1, publisher.batches.size());
+        Assert.assertEquals(1, publisher.batches.get(0).size());
+    }
+
+    @Test
+    public void testWaitingBuildPublishesOwnBatchWhenPoolIsFull() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        executor.rejecting = true;
+        RecordingPublisher publisher = new RecordingPublisher();
+        WikiPageQueue queue = new WikiPageQueue(executor, publisher);
+
+        queue.publishAndWait(createJob("jenkins", 1), NO_LOG);
+
+        Assert.assertEquals(Collections.singletonList(Thread.currentThread()), publisher.threads);
+    }
+
+    static PublishJob createJob(String username, int buildNumber) {
+        CodebeamerApiClient apiClient = new CodebeamerApiClient(username, "secret", URL, WIKI_ID);
+        return new PublishJob(apiClient, URL, WIKI_ID, null, null, null, null, null, BenchmarkFixtures.testReportBuild(buildNumber, 1),
+                new PublishStatusAction(URL + "/wiki/" + WIKI_ID), new PublishTimingAction());
+    }
+
+    private static class ManualExecutor implements Executor {
+        private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+        private volatile boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        private void runNext() throws InterruptedException {
+            Runnable task = tasks.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull("no drain was scheduled", task);
+            task.run();
+        }
+    }
+
+    private static class RecordingPublisher implements WikiPageQueue.BatchPublisher {
+        private final List<List<WikiPageQueue.PendingJob>> batches = new ArrayList<List<WikiPageQueue.PendingJob>>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+
+        @Override
+        public synchronized void publish(List<WikiPageQueue.PendingJob> batch) {
+            batches.add(batch);
+            threads.add(Thread.currentThread());
+            for (WikiPageQueue.PendingJob pendingJob : batch) {
+                pendingJob.result.set(null);
+            }
+        }
+    }
+}
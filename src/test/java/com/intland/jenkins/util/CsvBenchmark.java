@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvBenchmark {
+    private static final int TREND_ROWS = 100000;
+
+    private PublishDataDto testReportBuild;
+    private PublishDataDto performanceBuild;
+    private String trendCsv;
+    private TrendCsvCompactor dailyCompactor;
+
+    @Setup
+    public void setUp() {
+        testReportBuild = BenchmarkFixtures.testReportBuild(1234, 10);
+        performanceBuild = BenchmarkFixtures.performanceBuild(1234, 10);
+        trendCsv = BenchmarkFixtures.trendCsv(TREND_ROWS);
+        dailyCompactor = new TrendCsvCompactor(1000, TrendCsvCompactor.Granularity.DAILY);
+    }
+
+    @Benchmark
+    public String testResultRow() {
+        return CsvUtil.convertDtoToTestResultRow(testReportBuild.getBuildDto(), testReportBuild.getTestResultDto(), testReportBuild.getCurrentTime());
+    }
+
+    @Benchmark
+    public String performanceRow() {
+        return CsvUtil.convertDtoToPerformanceRow(performanceBuild.getPerformanceDto(), performanceBuild.getCurrentTime());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void compactTrendCsv() throws IOException {
+        dailyCompactor.compact(new StringReader(trendCsv), new NullWriter());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTests {
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(10, histogram.getCount());
+        Assert.assertEquals(5, histogram.getPercentile(50));
+        Assert.assertEquals(9, histogram.getPercentile(90));
+        Assert.assertEquals(10, histogram.getPercentile(100));
+        Assert.assertEquals(5.5, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void testPercentilesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        assertWithin(50000, histogram.getPercentile(50));
+        assertWithin(99000, histogram.getPercentile(99));
+        Assert.assertEquals(100000, histogram.getPercentile(100));
+        Assert.assertEquals(100000, histogram.getMax());
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue(value <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testMergedHistogramEqualsCombinedRecording() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        LatencyHistogram combined = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            first.record(i);
+            second.record(i * 7);
+            combined.record(i);
+            combined.record(i * 7);
+        }
+
+        first.merge(second);
+
+        Assert.assertEquals(combined.getCount(), first.getCount());
+        Assert.assertEquals(combined.getMax(), first.getMax());
+        Assert.assertEquals(combined.getPercentile(50), first.getPercentile(50));
+        Assert.assertEquals(combined.getPercentile(99), first.getPercentile(99));
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(99));
+        Assert.assertEquals(0, histogram.getMean(), 0);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue(actual + " is not within 7% of " + expected, Math.abs(actual - expected) <= expected * 0.07);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class LongHashSetTests {
+    @Test
+    public void testAddAndContains() {
+        LongHashSet set = new LongHashSet(0);
+
+        Assert.assertTrue(set.add(42));
+        Assert.assertFalse(set.add(42));
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(-1));
+
+        Assert.assertEquals(3, set.size());
+        Assert.assertTrue(set.contains(42));
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertFalse(set.contains(43));
+    }
+
+    @Test
+    public void testGrowsBeyondExpectedSize() {
+        Random random = new Random(7);
+        Set<Long> expected = new HashSet<Long>();
+        LongHashSet set = new LongHashSet(4);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong();
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+
+        Assert.assertEquals(expected.size(), set.size());
+        for (Long value : expected) {
+            Assert.assertTrue(set.contains(value));
+        }
+        Assert.assertEquals(expected.size(), new LongHashSet(set.toArray()).size());
+    }
+
+    @Test
+    public void testToArray() {
+        long[] values = new LongHashSet(new long[]{3, 0, 1, 3}).toArray();
+        Arrays.sort(values);
+
+        Assert.assertArrayEquals(new long[]{0, 1, 3}, values);
+    }
+
+    @Test
+    public void testHashIsStable() {
+        // stored in build records, must not change between versions
+        Assert.assertEquals(LongHashSet.hash("com.example.FooTest.testBar"), LongHashSet.hash(new StringBuilder("com.example.FooTest.testBar")));
+        Assert.assertNotEquals(LongHashSet.hash("com.example.FooTest.testBar"), LongHashSet.hash("com.example.FooTest.testBaz"));
+        Assert.assertEquals(1424229929713121840L, LongHashSet.hash("com.example.FooTest.testBar"));
+    }
+}
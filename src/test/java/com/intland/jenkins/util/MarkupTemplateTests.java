@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MarkupTemplateTests {
+    @Test
+    public void testPlaceholdersAreReplacedInOnePass() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("buildUrl", "http://localhost/job/1/");
+        values.put("changes", "costs $10 and \\ $buildUrl$");
+
+        String result = MarkupTemplate.compile("[$buildUrl$|$buildUrl$changes] $changes$").render(values);
+
+        Assert.assertEquals("[http://localhost/job/1/|http://localhost/job/1/changes] costs $10 and \\ $buildUrl$", result);
+    }
+
+    @Test
+    public void testUnknownPlaceholdersAndLoneDollarsAreKept() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("buildId", "7");
+
+        String result = MarkupTemplate.compile("$ 5 $unknown$ #$buildId$ $").render(values);
+
+        Assert.assertEquals("$ 5 $unknown$ #7 $", result);
+    }
+}
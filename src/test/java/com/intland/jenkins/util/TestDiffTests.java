@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestDiffTests {
+    @Test
+    public void testNewFailuresAndFixedTests() {
+        TestDiff testDiff = new TestDiff(hashes("a.ATest.one", "a.ATest.two", "a.ATest.three"), 3);
+        testDiff.addFailure("a.ATest.one");
+        testDiff.addFailure("a.ATest.four");
+        testDiff.addFailure("a.ATest.five");
+        testDiff.addPass("a.ATest.two");
+        testDiff.addPass("a.ATest.six");
+
+        Assert.assertEquals(2, testDiff.getNewFailureCount());
+        Assert.assertEquals(Arrays.asList("a.ATest.four", "a.ATest.five"), testDiff.getNewFailures());
+        Assert.assertEquals(1, testDiff.getFixedCount());
+        Assert.assertEquals(Collections.singletonList("a.ATest.two"), testDiff.getFixedTests());
+        Assert.assertEquals(3, testDiff.getFailureHashes().length);
+    }
+
+    @Test
+    public void testSameCountDifferentTests() {
+        TestDiff testDiff = new TestDiff(hashes("a.ATest.one", "a.ATest.two"), 2);
+        testDiff.addFailure("a.ATest.three");
+        testDiff.addFailure("a.ATest.four");
+        testDiff.addPass("a.ATest.one");
+        testDiff.addPass("a.ATest.two");
+
+        Assert.assertEquals(2, testDiff.getNewFailureCount());
+        Assert.assertEquals(2, testDiff.getFixedCount());
+    }
+
+    @Test
+    public void testWithoutPreviousBuild() {
+        TestDiff testDiff = new TestDiff(null, 1);
+        testDiff.addFailure("a.ATest.one");
+        testDiff.addPass("a.ATest.two");
+
+        Assert.assertEquals(0, testDiff.getNewFailureCount());
+        Assert.assertEquals(0, testDiff.getFixedCount());
+        Assert.assertEquals(1, testDiff.getFailureHashes().length);
+    }
+
+    @Test
+    public void testListedTestsAreLimited() {
+        TestDiff testDiff = new TestDiff(new long[0], 0);
+        for (int i = 0; i < 25; i++) {
+            testDiff.addFailure("a.ATest.test" + i);
+        }
+
+        Assert.assertEquals(25, testDiff.getNewFailureCount());
+        Assert.assertEquals(10, testDiff.getNewFailures().size());
+    }
+
+    private static long[] hashes(String... testNames) {
+        long[] result = new long[testNames.length];
+        for (int i = 0; i < testNames.length; i++) {
+            result[i] = LongHashSet.hash(testNames[i]);
+        }
+        return result;
+    }
+}
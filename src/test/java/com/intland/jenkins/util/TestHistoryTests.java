@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import com.intland.jenkins.collector.dto.TestResultDto;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestHistoryTests {
+    @Test
+    public void testCountFlips() {
+        // bit 0 is the latest build: pass, fail, pass, fail
+        Assert.assertEquals(3, TestHistory.countFlips(0xfL, 0x5L, 20));
+        Assert.assertEquals(0, TestHistory.countFlips(0xfL, 0xfL, 20));
+        Assert.assertEquals(0, TestHistory.countFlips(0xfL, 0x0L, 20));
+        // the builds the test did not run in are skipped
+        Assert.assertEquals(1, TestHistory.countFlips(0x9L, 0x1L, 20));
+        // only the last builds of the window count
+        Assert.assertEquals(2, TestHistory.countFlips(0xfL, 0xaL, 3));
+        Assert.assertEquals(63, TestHistory.countFlips(-1L, 0x5555555555555555L, 64));
+    }
+
+    @Test
+    public void testFlakyTests() {
+        TestHistory testHistory = new TestHistory(0);
+        boolean[] flakyResults = {false, true, false, true};
+        for (int build = 0; build < flakyResults.length; build++) {
+            testHistory.startBuild(build + 1);
+            record(testHistory, "a.ATest.flaky", flakyResults[build]);
+            record(testHistory, "a.ATest.stable", false);
+            record(testHistory, "a.ATest.broken", true);
+        }
+
+        Assert.assertEquals(3, testHistory.getTestCount());
+        Assert.assertEquals(1, testHistory.getFlakyCount());
+        Assert.assertEquals(100.0 / 3, testHistory.getFlakinessRate(), 0.001);
+        Assert.assertEquals("a.ATest.flaky", testHistory.getFlakyTests().get(0).getName());
+        Assert.assertEquals(3, testHistory.getFlakyTests().get(0).getFlips());
+    }
+
+    @Test
+    public void testFlakiestTestsListedFirst() {
+        TestHistory testHistory = new TestHistory(0);
+        for (int build = 0; build < 20; build++) {
+            testHistory.startBuild(build + 1);
+            for (int test = 1; test <= 15; test++) {
+                // alternates every 1 to 8 builds
+                int period = (test + 1) / 2;
+                record(testHistory, "a.ATest.test" + test, (build / period) % 2 == 1);
+            }
+        }
+
+        Assert.assertEquals(15, testHistory.getFlakyCount());
+        Assert.assertEquals(10, testHistory.getFlakyTests().size());
+        Assert.assertEquals("a.ATest.test1", testHistory.getFlakyTests().get(0).getName());
+        Assert.assertEquals(19, testHistory.getFlakyTests().get(0).getFlips());
+        for (int i = 1; i < testHistory.getFlakyTests().size(); i++) {
+            Assert.assertTrue(testHistory.getFlakyTests().get(i - 1).getFlips() >= testHistory.getFlakyTests().get(i).getFlips());
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File file = File.createTempFile("test-history", ".bin");
+        try {
+            TestHistory testHistory = new TestHistory(0);
+            for (int build = 0; build < 3; build++) {
+                testHistory.startBuild(build + 1);
+                record(testHistory, "a.ATest.flaky", build == 1);
+                for (int test = 0; test < 100; test++) {
+                    record(testHistory, "a.BTest.test" + test, false);
+                }
+            }
+            testHistory.save(file);
+            Assert.assertEquals(16 + 101 * 24, file.length());
+
+            TestHistory loadedHistory = TestHistory.load(file);
+            loadedHistory.startBuild(4);
+            record(loadedHistory, "a.ATest.flaky", true);
+            Assert.assertEquals(1, loadedHistory.getFlakyCount());
+            Assert.assertEquals(3, loadedHistory.getFlakyTests().get(0).getFlips());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBuildPublishedAgainIsRecordedOnce() throws IOException {
+        File file = File.createTempFile("test-history", ".bin");
+        try {
+            TestHistory testHistory = new TestHistory(0);
+            testHistory.startBuild(1);
+            record(testHistory, "a.ATest.flaky", false);
+            testHistory.startBuild(2);
+            record(testHistory, "a.ATest.flaky", true);
+            testHistory.save(file);
+
+            // build 2 again, with another result
+            TestHistory loadedHistory = TestHistory.load(file);
+            loadedHistory.startBuild(2);
+            record(loadedHistory, "a.ATest.flaky", false);
+            Assert.assertEquals(1, loadedHistory.getTestCount());
+            Assert.assertEquals(0, loadedHistory.getFlakyCount());
+
+            loadedHistory.startBuild(3);
+            record(loadedHistory, "a.ATest.flaky", true);
+            Assert.assertEquals(0, loadedHistory.getFlakyCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTestsNotRunFor64BuildsAreDropped() throws IOException {
+        File file = File.createTempFile("test-history", ".bin");
+        try {
+            TestHistory testHistory = new TestHistory(0);
+            testHistory.startBuild(1);
+            record(testHistory, "a.ATest.removed", false);
+            for (int build = 0; build < 64; build++) {
+                testHistory.startBuild(build + 2);
+                record(testHistory, "a.ATest.kept", false);
+            }
+            testHistory.save(file);
+
+            Assert.assertEquals(16 + 24, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLoadMissingFile() throws IOException {
+        TestHistory testHistory = TestHistory.load(new File("does-not-exist.bin"));
+        testHistory.startBuild(1);
+        Assert.assertEquals(0, testHistory.getTestCount());
+    }
+
+    @Test
+    public void testFormatFlakyTests() {
+        TestHistory testHistory = new TestHistory(0);
+        boolean[] flakyResults = {false, true, false};
+        for (int build = 0; build < flakyResults.length; build++) {
+            testHistory.startBuild(build + 1);
+            record(testHistory, "a.ATest.flaky[1|2]", flakyResults[build]);
+            record(testHistory, "a.ATest.stable", false);
+        }
+        TestResultDto testResultDto = new TestResultDto("", 2, 0, 0, "", 0);
+        Assert.assertEquals("", WikiMarkupBuilder.formatFlakyTests(testResultDto));
+
+        testResultDto.setFlakyTests(testHistory.getFlakyCount(), testHistory.getFlakinessRate(), testHistory.getFlakyTests());
+        Assert.assertEquals("\n* 1 flaky test (50.00%): a.ATest.flaky[[1~|2] (2 changes)", WikiMarkupBuilder.formatFlakyTests(testResultDto));
+    }
+
+    private static void record(TestHistory testHistory, String testName, boolean failed) {
+        testHistory.record(testName, LongHashSet.hash(testName), failed);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class TrendCsvCompactorTests {
+    @Test
+    public void testOlderRowsAreRolledUpPerBucket() throws Exception {
+        String csv = "7200000;10;20;1;5\n" +
+                "3700000;10;20;1;5\n" +
+                "3600000;30;40;3;5\n" +
+                "1000;5;5;0;5\n" +
+                "500;7;5;2;5\n";
+
+        String expected = "7200000;10;20;1;5\n" +
+                "3600000;20.00;30.00;2.00;5.00;10;20;1;5;30;40;3;5;n=2\n" +
+                "0;6.00;5.00;1.00;5.00;5;5;0;5;7;5;2;5;n=2\n";
+
+        Assert.assertEquals(expected, compact(csv, 1, TrendCsvCompactor.Granularity.HOURLY));
+    }
+
+    @Test
+    public void testAggregatedRowsAreMergedByWeight() throws Exception {
+        String csv = "3600000;20.00;30.00;2.00;5.00;10;20;1;5;30;40;3;5;n=2\n" +
+                "0;6.00;5.00;1.00;5.00;5;5;0;5;7;5;2;5;n=2\n";
+
+        String expected = "0;13.00;17.50;1.50;5.00;5;5;0;5;30;40;3;5;n=4\n";
+
+        Assert.assertEquals(expected, compact(csv, 0, TrendCsvCompactor.Granularity.DAILY));
+    }
+
+    @Test
+    public void testTrailingSeparatorOfPerformanceRowsIsKept() throws Exception {
+        String csv = "2000;100;90;300;\n1000;200;110;500;\n";
+
+        Assert.assertEquals("0;150.00;100.00;400.00;100;90;300;200;110;500;n=2;\n", compact(csv, 0, TrendCsvCompactor.Granularity.DAILY));
+    }
+
+    @Test
+    public void testAveragesKeepTheirFraction() throws Exception {
+        // one failure in three builds, rounding would drop it and rolling up again would keep it lost
+        String csv = "3000;1\n2000;0\n1000;0\n";
+        String compacted = compact(csv, 0, TrendCsvCompactor.Granularity.DAILY);
+        Assert.assertEquals("0;0.33;0;1;n=3\n", compacted);
+
+        Assert.assertEquals("0;0.33;0;1;n=3\n", compact(compacted, 0, TrendCsvCompactor.Granularity.DAILY));
+    }
+
+    private String compact(String csv, int keepRows, TrendCsvCompactor.Granularity granularity) throws Exception {
+        StringWriter result = new StringWriter();
+        new TrendCsvCompactor(keepRows, granularity).compact(new StringReader(csv), result);
+        return result.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrendSegmentManifestTests {
+    private static final String ATTACHMENT_NAME = "jenkinsbuildtrends.csv";
+    private static final String ROW = "1420070400000;160000;120000;2;4211\n";
+
+    @Test
+    public void testManifestName() {
+        Assert.assertEquals("jenkinsbuildtrends.manifest", TrendSegmentManifest.getManifestName(ATTACHMENT_NAME));
+        Assert.assertEquals("trends.manifest", TrendSegmentManifest.getManifestName("trends"));
+    }
+
+    @Test
+    public void testFirstRowsStartSegment() {
+        TrendSegmentManifest manifest = new TrendSegmentManifest(ATTACHMENT_NAME);
+
+        Assert.assertEquals("jenkinsbuildtrends-1.csv", manifest.append(ROW, 3).getName());
+        Assert.assertEquals("jenkinsbuildtrends-1.csv;1;" + ROW.length() + "\n", manifest.format());
+    }
+
+    @Test
+    public void testFullSegmentIsSealed() {
+        TrendSegmentManifest manifest = new TrendSegmentManifest(ATTACHMENT_NAME);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("jenkinsbuildtrends-1.csv", manifest.append(ROW, 3).getName());
+        }
+
+        manifest = TrendSegmentManifest.parse(ATTACHMENT_NAME, manifest.format());
+        Assert.assertEquals("jenkinsbuildtrends-2.csv", manifest.append(ROW + ROW, 3).getName());
+        Assert.assertEquals("jenkinsbuildtrends-2.csv;2;" + 2 * ROW.length() + "\n"
+                + "jenkinsbuildtrends-1.csv;3;" + 3 * ROW.length() + "\n", manifest.format());
+    }
+
+    @Test
+    public void testBatchIsNotSplit() {
+        TrendSegmentManifest manifest = TrendSegmentManifest.parse(ATTACHMENT_NAME, "jenkinsbuildtrends-4.csv;2;70\n");
+
+        TrendSegmentManifest.Segment segment = manifest.append(ROW + ROW + ROW, 3);
+        Assert.assertEquals("jenkinsbuildtrends-4.csv", segment.getName());
+        Assert.assertEquals(5, segment.getRows());
+    }
+
+    @Test
+    public void testSingleAttachmentIsKeptSealed() {
+        TrendSegmentManifest manifest = new TrendSegmentManifest(ATTACHMENT_NAME);
+        manifest.addSealed(ATTACHMENT_NAME);
+
+        Assert.assertEquals("jenkinsbuildtrends-1.csv", manifest.append(ROW, 3).getName());
+        String formatted = manifest.format();
+        Assert.assertEquals("jenkinsbuildtrends-1.csv;1;" + ROW.length() + "\n" + ATTACHMENT_NAME + ";;\n", formatted);
+
+        manifest = TrendSegmentManifest.parse(ATTACHMENT_NAME, formatted);
+        Assert.assertEquals(2, manifest.getSegments().size());
+        Assert.assertEquals(-1, manifest.getSegments().get(1).getRows());
+        Assert.assertEquals("jenkinsbuildtrends-1.csv", manifest.append(ROW, 3).getName());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+public class TrendStoreTests {
+    private static final String TEST_ROW = "1420070400000;160000;120000;2;4211;1;0;3;0.07\n";
+    private static final String PERFORMANCE_ROW = "1420070460000;120;95;1810;240;410;980;\n";
+
+    @Test
+    public void testFileOfPage() {
+        File directory = new File("trends");
+        File file = TrendStore.getFile(directory, "https://codebeamer.example.com/cb", "1001", "jenkinsbuildtrends.csv");
+
+        Assert.assertEquals("jenkinsbuildtrends.bin", file.getName());
+        Assert.assertTrue(file.getParentFile().getName().startsWith("1001-"));
+        Assert.assertFalse(file.equals(TrendStore.getFile(directory, "https://other.example.com/cb", "1001", "jenkinsbuildtrends.csv")));
+    }
+
+    @Test
+    public void testRowsAreWrittenBack() throws IOException {
+        File file = newStoreFile();
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                Assert.assertTrue(store.isEmpty());
+                Assert.assertTrue(store.append(TEST_ROW, 7));
+                Assert.assertTrue(store.append(PERFORMANCE_ROW, 8));
+                Assert.assertFalse(store.append("not;a;row", 9));
+
+                Assert.assertEquals(2, store.size());
+                Assert.assertEquals(1420070400000L, store.getTimestamp(0));
+                Assert.assertEquals(7, store.getBuildNumber(0));
+                Assert.assertEquals(8, store.getWidth(0));
+                Assert.assertEquals(4211, store.getValue(0, 3), 0);
+                Assert.assertEquals(PERFORMANCE_ROW + TEST_ROW, toCsv(store));
+            } finally {
+                store.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void testStoreIsReopened() throws IOException {
+        File file = newStoreFile();
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                // beyond the initial capacity
+                for (int i = 0; i < 100; i++) {
+                    store.append((1420070400000L + i) + ";160000;120000;2;4211;0;0;0;0.00\n", i + 1);
+                }
+            } finally {
+                store.close();
+            }
+
+            store = TrendStore.open(file);
+            try {
+                Assert.assertEquals(100, store.size());
+                Assert.assertEquals(1420070400099L, store.getTimestamp(99));
+                Assert.assertEquals(100, store.getBuildNumber(99));
+                store.append(TEST_ROW, 101);
+                Assert.assertTrue(toCsv(store).startsWith(TEST_ROW + "1420070400099;160000;120000;2;4211;0;0;0;0\n"));
+            } finally {
+                store.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void testImportedRowsKeepTheirOrder() throws IOException {
+        File file = newStoreFile();
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                String csv = "1420070520000;170000;130000;1;4211\n" +
+                        "\n" +
+                        "1420070460000;150000;110000;3;4210\n" +
+                        "1420070400000;160000.50;120000;2;4200;150000;110000;1;4200;170000;130000;3;4211;n=4\n";
+                Assert.assertEquals(0, store.importCsv(new StringReader(csv)));
+                store.append(TEST_ROW, 12);
+
+                Assert.assertEquals(4, store.size());
+                Assert.assertEquals(4, store.getRowCount(0));
+                Assert.assertEquals(0, store.getBuildNumber(0));
+                Assert.assertEquals(TEST_ROW +
+                        "1420070520000;170000;130000;1;4211\n" +
+                        "1420070460000;150000;110000;3;4210\n" +
+                        "1420070400000;160000.50;120000;2;4200;150000;110000;1;4200;170000;130000;3;4211;n=4\n", toCsv(store));
+            } finally {
+                store.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void testRolledUpRowsKeepTheirWeight() throws IOException {
+        File file = newStoreFile();
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                store.importCsv(new StringReader("1420070400000;10;8;12;n=4\n"));
+                store.append("1420070460000;20\n", 5);
+
+                StringWriter compacted = new StringWriter();
+                new TrendCsvCompactor(0, TrendCsvCompactor.Granularity.DAILY).compact(new StringReader(toCsv(store)), compacted);
+                Assert.assertEquals("1420070400000;12.00;8;20;n=5\n", compacted.toString());
+            } finally {
+                store.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void testLinesThatAreNotRowsAreSkipped() throws IOException {
+        File file = newStoreFile();
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                Assert.assertEquals(2, store.importCsv(new StringReader("timestamp;duration\n1420070400000;1;2;3;4;5;6;7;8;9\n" + TEST_ROW)));
+                Assert.assertEquals(1, store.size());
+            } finally {
+                store.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherFileIsRejected() throws IOException {
+        File file = newStoreFile();
+        try {
+            Files.write(file.toPath(), "1420070400000;160000;120000;2;4211\n".getBytes("UTF-8"));
+            TrendStore.open(file).close();
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void testCorruptStoreIsReplaced() throws IOException {
+        File file = newStoreFile();
+        File corruptFile = new File(file.getPath() + ".corrupt");
+        try {
+            TrendStore store = TrendStore.open(file);
+            try {
+                store.append(TEST_ROW, 7);
+            } finally {
+                store.close();
+            }
+            // cut in the middle of the header
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(10);
+            } finally {
+                randomAccessFile.close();
+            }
+
+            store = TrendStore.openOrReplace(file);
+            try {
+                Assert.assertTrue(store.isEmpty());
+                Assert.assertEquals(10, corruptFile.length());
+                Assert.assertTrue(store.append(TEST_ROW, 8));
+            } finally {
+                store.close();
+            }
+        } finally {
+            corruptFile.delete();
+            delete(file);
+        }
+    }
+
+    private static File newStoreFile() throws IOException {
+        return new File(Files.createTempDirectory("trend-store").toFile(), "jenkinsbuildtrends.bin");
+    }
+
+    private static void delete(File file) {
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    private static String toCsv(TrendStore store) throws IOException {
+        StringWriter csv = new StringWriter();
+        store.writeCsv(csv);
+        return csv.toString();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015 Intland Software (support@intland.com)
+ */
+package com.intland.jenkins.util;
+
+import com.intland.jenkins.BenchmarkFixtures;
+import com.intland.jenkins.collector.dto.PublishDataDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WikiMarkupBuilderBenchmark {
+    @Param({"10", "1000"})
+    public int commits;
+
+    private PublishDataDto testReportBuild;
+    private PublishDataDto performanceBuild;
+
+    @Setup
+    public void setUp() {
+        testReportBuild = BenchmarkFixtures.testReportBuild(1234, commits);
+        performanceBuild = BenchmarkFixtures.performanceBuild(1234, commits);
+    }
+
+    @Benchmark
+    public String renderTestReport() {
+        return new WikiMarkupBuilder()
+                .initWithTestReportTemplate()
+                .withBuildInfo(testReportBuild.getBuildDto())
+                .withTestReportInfo(testReportBuild.getTestResultDto())
+                .withScmInfo(testReportBuild.getScmDto())
+                .build();
+    }
+
+    @Benchmark
+    public String renderPerformanceReport() {
+        return new WikiMarkupBuilder()
+                .initWithPerformanceTemplate()
+                .withBuildInfo(performanceBuild.getBuildDto())
+                .withPerformanceInfo(performanceBuild.getPerformanceDto())
+                .withScmInfo(performanceBuild.getScmDto())
+                .build();
+    }
+}